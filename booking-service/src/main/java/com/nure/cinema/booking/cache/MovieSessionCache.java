@@ -0,0 +1,273 @@
+package com.nure.cinema.booking.cache;
+
+import com.nure.cinema.booking.dto.MovieSessionDTO;
+import com.nure.cinema.booking.exception.MovieServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded local cache of Movie Service sessions.
+ *
+ * Entries are fresh for {@code ttl}. A hit in the last {@code refresh-ahead} of that window
+ * triggers one background reload, so hot sessions are renewed before they ever expire. An
+ * expired entry is reloaded on the caller's path; if Movie Service cannot be reached, the stale
+ * entry keeps being served for up to {@code stale-grace} after expiry instead of failing
+ * the booking. Entries are split over independently locked LRU segments. Metrics are registered
+ * by Spring through {@link MeterBinder} once the cache is constructed.
+ */
+@Component
+public class MovieSessionCache implements MeterBinder {
+
+    /**
+     * Loads a session: completes with null if it does not exist, exceptionally if Movie Service
+     * is unreachable.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        CompletableFuture<MovieSessionDTO> load(String sessionId);
+    }
+
+    private static final int SEGMENTS = 16;
+    private static final String CACHE_NAME = "movie-sessions";
+
+    private final long ttlNanos;
+    private final long refreshAheadNanos;
+    private final long staleGraceNanos;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LoadTimes loadSuccess = new LoadTimes();
+    private final LoadTimes loadFailure = new LoadTimes();
+
+    public MovieSessionCache(
+            @Value("${booking.session-cache.max-entries:10000}") int maxEntries,
+            @Value("${booking.session-cache.ttl:30s}") Duration ttl,
+            @Value("${booking.session-cache.refresh-ahead:10s}") Duration refreshAhead,
+            @Value("${booking.session-cache.stale-grace:5m}") Duration staleGrace) {
+        this.ttlNanos = ttl.toNanos();
+        this.refreshAheadNanos = Math.min(refreshAhead.toNanos(), ttlNanos);
+        this.staleGraceNanos = staleGrace.toNanos();
+        this.segments = new Segment[SEGMENTS];
+        int segmentCapacity = Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Completes immediately on a fresh hit; otherwise completes once the loader does.
+     *
+     * @return the session, or null if Movie Service says it does not exist; completes with
+     * {@link MovieServiceUnavailableException} if it cannot be loaded and no usable stale copy exists
+     */
+    public CompletableFuture<MovieSessionDTO> get(String sessionId, Loader loader) {
+        Segment segment = segmentFor(sessionId);
+        Entry entry = segment.get(sessionId);
+
+        if (entry != null) {
+            long age = System.nanoTime() - entry.loadedAt;
+            if (age < ttlNanos) {
+                hits.increment();
+                if (age >= ttlNanos - refreshAheadNanos) {
+                    refreshInBackground(sessionId, entry, loader);
+                }
+                return CompletableFuture.completedFuture(entry.value);
+            }
+        }
+
+        misses.increment();
+        return load(sessionId, loader).handle((value, error) -> {
+            if (error == null) {
+                return value;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (entry != null && System.nanoTime() - entry.loadedAt < ttlNanos + staleGraceNanos) {
+                staleHits.increment();
+                System.out.println("[SESSION CACHE] Serving stale session " + sessionId +
+                        " (Movie Service unavailable: " + describe(cause) + ")");
+                return entry.value;
+            }
+            throw new MovieServiceUnavailableException("Cannot load session " + sessionId +
+                    " from Movie Service: " + describe(cause));
+        });
+    }
+
+    public void invalidate(String sessionId) {
+        segmentFor(sessionId).remove(sessionId);
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private CompletableFuture<MovieSessionDTO> load(String sessionId, Loader loader) {
+        long started = System.nanoTime();
+        CompletableFuture<MovieSessionDTO> loading;
+        try {
+            loading = loader.load(sessionId);
+        } catch (RuntimeException e) {
+            loading = CompletableFuture.failedFuture(e);
+        }
+        return loading.whenComplete((value, error) -> {
+            long elapsed = System.nanoTime() - started;
+            if (error != null) {
+                loadFailure.record(elapsed);
+                return;
+            }
+            loadSuccess.record(elapsed);
+            Segment segment = segmentFor(sessionId);
+            if (value == null) {
+                segment.remove(sessionId);
+            } else {
+                segment.put(sessionId, new Entry(value, System.nanoTime()));
+            }
+        });
+    }
+
+    private void refreshInBackground(String sessionId, Entry entry, Loader loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        load(sessionId, loader).whenComplete((value, error) -> {
+            if (error != null) {
+                // keep serving the current entry; it is reloaded on the caller's path once expired
+                entry.refreshing.set(false);
+            }
+        });
+    }
+
+    private static String describe(Throwable error) {
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    private Segment segmentFor(String key) {
+        return segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        FunctionTimer.builder("cache.load", loadSuccess, LoadTimes::count, LoadTimes::totalNanos, TimeUnit.NANOSECONDS)
+                .tag("cache", CACHE_NAME).tag("outcome", "success")
+                .description("Time to load a session from Movie Service")
+                .register(meterRegistry);
+        FunctionTimer.builder("cache.load", loadFailure, LoadTimes::count, LoadTimes::totalNanos, TimeUnit.NANOSECONDS)
+                .tag("cache", CACHE_NAME).tag("outcome", "failure")
+                .description("Time spent on failed session loads")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", hits, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME).tag("result", "hit")
+                .description("Session cache hits")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME).tag("result", "miss")
+                .description("Session cache misses and expired entries")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", staleHits, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME).tag("result", "stale")
+                .description("Expired entries served because Movie Service was unavailable")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME)
+                .description("Entries evicted to stay within the size bound")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, MovieSessionCache::size)
+                .tag("cache", CACHE_NAME)
+                .description("Number of cached sessions")
+                .register(meterRegistry);
+    }
+
+    // Count and total time of loads, read by a FunctionTimer
+    private static final class LoadTimes {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double totalNanos() {
+            return totalNanos.sum();
+        }
+    }
+
+    private static final class Entry {
+        private final MovieSessionDTO value;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(MovieSessionDTO value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<String, Entry> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Entry get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, Entry entry) {
+            entries.put(key, entry);
+        }
+
+        synchronized void remove(String key) {
+            entries.remove(key);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -1,54 +1,86 @@
 package com.nure.cinema.booking.client;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nure.cinema.booking.cache.MovieSessionCache;
 import com.nure.cinema.booking.dto.MovieSessionDTO;
+import com.nure.cinema.booking.exception.MovieServiceUnavailableException;
 import com.nure.cinema.booking.validation.SchemaValidator;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Enhanced IPC Client з підтримкою Service Discovery та Client-Side Load Balancing
  *
  * Відмінності від попередньої версії:
  * - Використовує DiscoveryClient для пошуку інстансів Movie Service
- * - Реалізує client-side load balancing (round-robin)
+ * - Реалізує client-side load balancing (round-robin, P2C по EWMA-латентності, least-outstanding)
+ * - Пасивно виключає інстанси після послідовних збоїв і повертає їх з backoff
  * - Автоматично fail-over на інший інстанс при збої
+ * - Неблокуючі запити (sendAsync, HTTP/2) з одним загальним дедлайном на виклик
  */
 @Component
 public class MovieServiceClient {
 
     private final HttpClient httpClient;
+    private final ThreadPoolExecutor httpExecutor;
     private final ObjectMapper objectMapper;
     private final SchemaValidator schemaValidator;
     private final DiscoveryClient discoveryClient;
+    private final MovieSessionCache sessionCache;
+    private final SingleFlight<String, MovieSessionDTO> sessionFetches = new SingleFlight<>();
+    private final Duration deadline;
 
     public String getMovieServiceName() {
         return movieServiceName;
     }
 
     private final String movieServiceName;
-    private final Random random = new Random();
+    private final InstanceBalancer balancer;
 
     public MovieServiceClient(
             @Value("${services.movie.name:movie-service}") String movieServiceName,
+            @Value("${services.movie.deadline:5s}") Duration deadline,
+            @Value("${services.movie.io-threads:4}") int ioThreads,
+            @Value("${services.movie.io-queue-capacity:1000}") int ioQueueCapacity,
+            @Value("${services.movie.balancer.strategy:p2c-ewma}") String balancerStrategy,
+            @Value("${services.movie.balancer.failure-threshold:5}") int failureThreshold,
+            @Value("${services.movie.balancer.base-ejection:10s}") Duration baseEjection,
+            @Value("${services.movie.balancer.max-ejection:5m}") Duration maxEjection,
             ObjectMapper objectMapper,
             SchemaValidator schemaValidator,
-            DiscoveryClient discoveryClient) {
+            DiscoveryClient discoveryClient,
+            MovieSessionCache sessionCache) {
         this.movieServiceName = movieServiceName;
+        this.deadline = deadline;
         this.objectMapper = objectMapper;
         this.schemaValidator = schemaValidator;
         this.discoveryClient = discoveryClient;
+        this.sessionCache = sessionCache;
+        this.balancer = new InstanceBalancer(InstanceBalancer.Strategy.parse(balancerStrategy),
+                failureThreshold, baseEjection, maxEjection);
+        this.httpExecutor = boundedExecutor("movie-client-io", ioThreads, ioQueueCapacity);
         this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .executor(httpExecutor)
                 .connectTimeout(Duration.ofSeconds(5))
                 .build();
     }
@@ -64,74 +96,163 @@ public class MovieServiceClient {
             return null;
         }
 
-        // Client-side load balancing: випадковий вибір інстансу
-        ServiceInstance instance = instances.get(random.nextInt(instances.size()));
+        // Client-side load balancing: вибір інстансу згідно зі стратегією балансувальника
+        ServiceInstance instance = balancer.choose(instances);
         String url = instance.getUri().toString() + "/api";
 
         System.out.println("[LOAD BALANCING] Selected instance: " + instance.getInstanceId() +
-                " at " + url + " (available: " + instances.size() + ")");
+                " at " + url + " (available: " + instances.size() + ", strategy: " + balancer.getStrategy() + ")");
 
         return url;
     }
 
     /**
-     * Get session з автоматичним fail-over
+     * Get session через локальний кеш (TTL + stale-while-revalidate).
+     * Блокує потік не довше за дедлайн виклику.
+     *
+     * @return сесія або null, якщо сесії не існує чи Movie Service недоступний
      */
     public MovieSessionDTO getSession(String sessionId) {
+        try {
+            return getSessionAsync(sessionId).join();
+        } catch (CompletionException e) {
+            System.err.println("[IPC ERROR] " + e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Неблокуюча версія getSession.
+     * Промахи кешу для однієї сесії об'єднуються в один HTTP-запит (single-flight).
+     *
+     * @return future з сесією або null, якщо сесії не існує;
+     * завершується з MovieServiceUnavailableException, якщо Movie Service недоступний
+     */
+    public CompletableFuture<MovieSessionDTO> getSessionAsync(String sessionId) {
+        return sessionCache.get(sessionId,
+                id -> sessionFetches.execute(id, () -> fetchSession(id)));
+    }
+
+    /**
+     * Скинути кешовану сесію (наприклад, після зміни сесії в Movie Service)
+     */
+    public void invalidateSession(String sessionId) {
+        sessionCache.invalidate(sessionId);
+    }
+
+    public void invalidateAllSessions() {
+        sessionCache.invalidateAll();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpExecutor.shutdown();
+    }
+
+    /**
+     * Завантажити сесію з Movie Service з автоматичним fail-over.
+     * Порядок інстансів визначає балансувальник; всі спроби разом вкладаються в один дедлайн.
+     *
+     * @return future з сесією або null, якщо Movie Service відповів 404;
+     * завершується з помилкою, якщо жоден інстанс не відповів коректно до дедлайну
+     */
+    private CompletableFuture<MovieSessionDTO> fetchSession(String sessionId) {
         List<ServiceInstance> instances = discoveryClient.getInstances(movieServiceName);
 
         if (instances == null || instances.isEmpty()) {
-            System.err.println("[IPC ERROR] Movie Service not available in Eureka");
-            return null;
+            return CompletableFuture.failedFuture(new IOException("Movie Service not available in Eureka"));
+        }
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        return fetchSession(sessionId, balancer.order(instances), 0, deadlineNanos)
+                .orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private CompletableFuture<MovieSessionDTO> fetchSession(String sessionId, List<ServiceInstance> instances,
+                                                            int index, long deadlineNanos) {
+        if (index >= instances.size()) {
+            return CompletableFuture.failedFuture(new IOException("All Movie Service instances failed"));
+        }
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return CompletableFuture.failedFuture(new TimeoutException("Movie Service deadline exceeded"));
         }
 
-        // Спробувати всі доступні інстанси
-        for (ServiceInstance instance : instances) {
-            try {
-                String serviceUrl = instance.getUri().toString() + "/api";
-                System.out.println("[IPC] Trying instance: " + instance.getInstanceId() + " at " + serviceUrl);
-
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(serviceUrl + "/movies/sessions/" + sessionId))
-                        .header("Accept", "application/json")
-                        .timeout(Duration.ofSeconds(5))
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(
-                        request,
-                        HttpResponse.BodyHandlers.ofString()
-                );
-
-                if (response.statusCode() == 200) {
-                    String responseBody = response.body();
-
-                    // JSON Schema validation
-                    boolean isValid = schemaValidator.validate("MovieSession", responseBody);
-                    if (!isValid) {
-                        System.err.println("[CONTRACT VIOLATION] Invalid MovieSession from " +
-                                instance.getInstanceId());
-                        continue; // спробувати інший інстанс
-                    }
-
-                    System.out.println("[IPC SUCCESS] Response from " + instance.getInstanceId() +
-                            " validated successfully");
-                    return objectMapper.readValue(responseBody, MovieSessionDTO.class);
-
-                } else if (response.statusCode() == 404) {
-                    System.err.println("[IPC] Session not found (404) from " + instance.getInstanceId());
-                    return null; // сесія не існує, не пробувати інші інстанси
-                }
-
-            } catch (Exception e) {
-                System.err.println("[IPC FAIL] Instance " + instance.getInstanceId() +
-                        " failed: " + e.getMessage());
-                // продовжити спробу з наступним інстансом
-            }
+        ServiceInstance instance = instances.get(index);
+        String serviceUrl = instance.getUri().toString() + "/api";
+        System.out.println("[IPC] Trying instance: " + instance.getInstanceId() + " at " + serviceUrl);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(serviceUrl + "/movies/sessions/" + sessionId))
+                .header("Accept", "application/json")
+                .timeout(Duration.ofNanos(remaining))
+                .GET()
+                .build();
+
+        long startedAt = balancer.onStart(instance);
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> readSession(instance, response))
+                .whenComplete((session, error) -> balancer.onComplete(instance, startedAt, error == null))
+                .exceptionallyCompose(error -> {
+                    System.err.println("[IPC FAIL] Instance " + instance.getInstanceId() +
+                            " failed: " + describe(error));
+                    // продовжити спробу з наступним інстансом
+                    return fetchSession(sessionId, instances, index + 1, deadlineNanos);
+                });
+    }
+
+    /**
+     * @return сесія або null для 404; кидає виняток, якщо варто спробувати інший інстанс
+     */
+    private MovieSessionDTO readSession(ServiceInstance instance, HttpResponse<String> response) {
+        if (response.statusCode() == 404) {
+            System.err.println("[IPC] Session not found (404) from " + instance.getInstanceId());
+            return null; // сесія не існує, не пробувати інші інстанси
+        }
+        if (response.statusCode() != 200) {
+            throw new UncheckedIOException(new IOException("HTTP " + response.statusCode()));
         }
 
-        System.err.println("[IPC ERROR] All Movie Service instances failed");
-        return null;
+        String responseBody = response.body();
+
+        // JSON Schema validation
+        boolean isValid = schemaValidator.validate("MovieSession", responseBody);
+        if (!isValid) {
+            System.err.println("[CONTRACT VIOLATION] Invalid MovieSession from " +
+                    instance.getInstanceId());
+            throw new UncheckedIOException(new IOException("Invalid MovieSession")); // спробувати інший інстанс
+        }
+
+        try {
+            MovieSessionDTO session = objectMapper.readValue(responseBody, MovieSessionDTO.class);
+            System.out.println("[IPC SUCCESS] Response from " + instance.getInstanceId() +
+                    " validated successfully");
+            return session;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Обмежений пул для HttpClient: фіксована кількість потоків і черга,
+     * щоб повільний downstream не породжував нові потоки
+     */
+    private static ThreadPoolExecutor boundedExecutor(String name, int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     /**
@@ -145,11 +266,11 @@ public class MovieServiceClient {
     }
 
     /**
-     * Health check
+     * Health check: хоча б один інстанс зареєстрований і не виключений через збої
      */
     public boolean isServiceHealthy() {
         List<ServiceInstance> instances = discoveryClient.getInstances(movieServiceName);
-        return instances != null && !instances.isEmpty();
+        return instances != null && balancer.hasAdmittedInstance(instances);
     }
 
     /**
@@ -160,7 +281,8 @@ public class MovieServiceClient {
         if (instances == null || instances.isEmpty()) {
             return "No instances available";
         }
-        return instances.size() + " instance(s) available: " +
+        return instances.size() + " instance(s) available (" + balancer.ejectedCount(instances) +
+                " ejected): " +
                 instances.stream()
                         .map(ServiceInstance::getInstanceId)
                         .toList();
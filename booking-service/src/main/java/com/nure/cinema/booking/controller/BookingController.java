@@ -10,6 +10,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.HashMap;
 import java.util.List;
@@ -23,6 +24,9 @@ public class BookingController {
     private final BookingService bookingService;
     private final MovieServiceClient movieServiceClient;
 
+    // Part of every seat map ETag: versions restart with the process, ETags must not repeat
+    private final long etagEpoch = System.currentTimeMillis();
+
     public BookingController(BookingService bookingService, MovieServiceClient movieServiceClient) {
         this.bookingService = bookingService;
         this.movieServiceClient = movieServiceClient;
@@ -30,7 +34,7 @@ public class BookingController {
 
     @GetMapping
     @Operation(summary = "Get all bookings or filter by status/user",
-            description = "Returns list of all bookings with optional filtering")
+            description = "Returns list of all bookings with optional filtering; userId and status can be combined")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successfully retrieved bookings")
     })
@@ -40,7 +44,9 @@ public class BookingController {
 
         List<BookingDTO> bookings;
 
-        if (userId != null) {
+        if (userId != null && status != null) {
+            bookings = bookingService.getBookingsByUserIdAndStatus(userId, status);
+        } else if (userId != null) {
             bookings = bookingService.getBookingsByUserId(userId);
         } else if (status != null) {
             bookings = bookingService.getBookingsByStatus(status);
@@ -51,6 +57,22 @@ public class BookingController {
         return ResponseEntity.ok(bookings);
     }
 
+    @GetMapping("/sessions/{sessionId}/seatmap")
+    @Operation(summary = "Get seat map of a session",
+            description = "Returns taken seats as one base64 bit array per row (seat n = bit n % 8 of byte n / 8). " +
+                    "Supports If-None-Match for cheap polling")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved seat map"),
+            @ApiResponse(responseCode = "304", description = "Seat map unchanged since the given ETag")
+    })
+    public ResponseEntity<SeatMapDTO> getSeatMap(@PathVariable String sessionId, WebRequest webRequest) {
+        String etag = "\"" + etagEpoch + "-seatmap-" + bookingService.getSeatMapVersion(sessionId) + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok(bookingService.getSeatMap(sessionId));
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get booking by ID",
             description = "Returns details of a specific booking")
@@ -91,6 +113,18 @@ public class BookingController {
         return ResponseEntity.ok(updatedBooking);
     }
 
+    @PostMapping("/confirmations")
+    @Operation(summary = "Confirm bookings in bulk",
+            description = "Confirms up to booking.confirmations.max-batch bookings in one call. " +
+                    "Returns a result per booking with the status code a single update would have returned")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Bookings processed, see per-booking results"),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized request")
+    })
+    public ResponseEntity<ConfirmBookingsResponse> confirmBookings(@RequestBody ConfirmBookingsRequest request) {
+        return ResponseEntity.ok(bookingService.confirmBookings(request));
+    }
+
     @PatchMapping("/{id}/cancel")
     @Operation(summary = "Cancel booking",
             description = "Cancels an existing booking")
@@ -162,4 +196,26 @@ public class BookingController {
 
         return ResponseEntity.ok(debugInfo);
     }
-}
\ No newline at end of file
+
+    @DeleteMapping("/cache/sessions/{sessionId}")
+    @Operation(summary = "Invalidate cached session",
+            description = "Drops one Movie Service session from the local session cache")
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Session removed from cache")
+    })
+    public ResponseEntity<Void> invalidateCachedSession(@PathVariable String sessionId) {
+        movieServiceClient.invalidateSession(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/cache/sessions")
+    @Operation(summary = "Invalidate session cache",
+            description = "Drops every Movie Service session from the local session cache")
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Session cache cleared")
+    })
+    public ResponseEntity<Void> invalidateSessionCache() {
+        movieServiceClient.invalidateAllSessions();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,11 @@
+package com.nure.cinema.booking.dto;
+
+import java.util.List;
+
+public class ConfirmBookingsRequest {
+    private List<String> bookingIds;
+
+    // Getters and Setters
+    public List<String> getBookingIds() { return bookingIds; }
+    public void setBookingIds(List<String> bookingIds) { this.bookingIds = bookingIds; }
+}
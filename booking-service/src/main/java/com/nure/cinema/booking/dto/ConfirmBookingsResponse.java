@@ -0,0 +1,51 @@
+package com.nure.cinema.booking.dto;
+
+import java.util.List;
+
+public class ConfirmBookingsResponse {
+    private int confirmed;
+    private int failed;
+    private List<ConfirmationResultDTO> results;
+
+    // Getters and Setters
+    public int getConfirmed() { return confirmed; }
+    public void setConfirmed(int confirmed) { this.confirmed = confirmed; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public List<ConfirmationResultDTO> getResults() { return results; }
+    public void setResults(List<ConfirmationResultDTO> results) { this.results = results; }
+
+    /**
+     * Outcome for one booking; {@code status} is the code PUT /api/bookings/{id} would have
+     * returned (200, 400 or 404).
+     */
+    public static class ConfirmationResultDTO {
+        private String bookingId;
+        private int status;
+        private String bookingStatus;
+        private String message;
+
+        public ConfirmationResultDTO() {}
+
+        public ConfirmationResultDTO(String bookingId, int status, String bookingStatus, String message) {
+            this.bookingId = bookingId;
+            this.status = status;
+            this.bookingStatus = bookingStatus;
+            this.message = message;
+        }
+
+        public String getBookingId() { return bookingId; }
+        public void setBookingId(String bookingId) { this.bookingId = bookingId; }
+
+        public int getStatus() { return status; }
+        public void setStatus(int status) { this.status = status; }
+
+        public String getBookingStatus() { return bookingStatus; }
+        public void setBookingStatus(String bookingStatus) { this.bookingStatus = bookingStatus; }
+
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+    }
+}
@@ -0,0 +1,43 @@
+package com.nure.cinema.booking.dto;
+
+import java.util.List;
+
+public class SeatMapDTO {
+    private String sessionId;
+    private long version;
+    private int occupiedSeats;
+    private List<RowDTO> rows;
+
+    // Getters and Setters
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public int getOccupiedSeats() { return occupiedSeats; }
+    public void setOccupiedSeats(int occupiedSeats) { this.occupiedSeats = occupiedSeats; }
+
+    public List<RowDTO> getRows() { return rows; }
+    public void setRows(List<RowDTO> rows) { this.rows = rows; }
+
+    // Inner class: occupied seats of one row as a base64 bit array,
+    // seat n is bit (n % 8) (least significant first) of byte n / 8
+    public static class RowDTO {
+        private int row;
+        private String occupied;
+
+        public RowDTO() {}
+
+        public RowDTO(int row, String occupied) {
+            this.row = row;
+            this.occupied = occupied;
+        }
+
+        public int getRow() { return row; }
+        public void setRow(int row) { this.row = row; }
+
+        public String getOccupied() { return occupied; }
+        public void setOccupied(String occupied) { this.occupied = occupied; }
+    }
+}
@@ -9,7 +9,7 @@ import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
 
-@RestControllerAdvice(basePackages = "com.nure.PZ2.booking")
+@RestControllerAdvice(basePackages = "com.nure.cinema.booking")
 public class GlobalExceptionHandler {
 
     @ExceptionHandler(BookingNotFoundException.class)
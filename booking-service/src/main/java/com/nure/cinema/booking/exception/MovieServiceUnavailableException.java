@@ -0,0 +1,7 @@
+package com.nure.cinema.booking.exception;
+
+public class MovieServiceUnavailableException extends RuntimeException {
+    public MovieServiceUnavailableException(String message) {
+        super(message);
+    }
+}
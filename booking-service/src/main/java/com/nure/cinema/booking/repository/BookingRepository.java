@@ -8,21 +8,51 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
 
 @Repository
 public class BookingRepository {
 
-    private final List<Booking> bookings = new ArrayList<>();
+    // Creation order of booking ids: "bk-9999" before "bk-10000"
+    private static final Comparator<String> ID_ORDER =
+            Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    // Concurrent primary map keyed by id, iterated in creation order
+    private final Map<String, Booking> bookings = new ConcurrentSkipListMap<>(ID_ORDER);
+
+    // Secondary indexes: userId -> bookingIds, status -> bookingIds, sessionId -> bookingIds
+    private final Map<String, Set<String>> bookingsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> bookingsByStatus = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> bookingsBySession = new ConcurrentHashMap<>();
+
+    // Index keys each booking was last indexed under (bookings are mutated in place before save)
+    private final Map<String, BookingKeys> indexedKeys = new ConcurrentHashMap<>();
+
+    // Seat coordinates the occupancy index can hold: rows and numbers below these limits
+    public static final int MAX_ROWS = SeatOccupancyIndex.MAX_ROWS;
+    public static final int MAX_SEATS_PER_ROW = SeatOccupancyIndex.MAX_SEATS_PER_ROW;
+
+    private final SeatOccupancyIndex seatIndex = new SeatOccupancyIndex();
+
+    // Seats each booking currently occupies in seatIndex. Bookings are mutated in place
+    // (e.g. status set to CANCELLED or EXPIRED) before save, so the old state cannot be read from them.
+    private final Map<String, HeldSeats> heldSeats = new ConcurrentHashMap<>();
 
     public BookingRepository() {
         initializeData();
     }
 
     private void initializeData() {
-        bookings.add(new Booking(
+        save(new Booking(
                 "bk-1001", "sess-1002", "user-9001",
                 "Ivan Kovalchuk", "i.kovalchuk@gmail.com",
                 Arrays.asList(
@@ -36,7 +66,7 @@ public class BookingRepository {
                 "Tickets with popcorn."
         ));
 
-        bookings.add(new Booking(
+        save(new Booking(
                 "bk-1002", "sess-1001", "user-9001",
                 "Ivan Kovalchuk", "i.kovalchuk@gmail.com",
                 Arrays.asList(new Seat(4, 5, "R4N5")),
@@ -48,54 +78,198 @@ public class BookingRepository {
     }
 
     public List<Booking> findAll() {
-        return new ArrayList<>(bookings);
+        return new ArrayList<>(bookings.values());
     }
 
     public Optional<Booking> findById(String id) {
-        return bookings.stream()
-                .filter(b -> b.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(bookings.get(id));
     }
 
     public List<Booking> findBySessionId(String sessionId) {
-        return bookings.stream()
-                .filter(b -> b.getSessionId().equals(sessionId))
-                .collect(Collectors.toList());
+        return resolve(bookingsBySession.get(sessionId), b -> sessionId.equals(b.getSessionId()));
     }
 
     public List<Booking> findByUserId(String userId) {
-        return bookings.stream()
-                .filter(b -> b.getUserId().equals(userId))
-                .collect(Collectors.toList());
+        return resolve(bookingsByUser.get(userId), b -> userId.equals(b.getUserId()));
     }
 
     public List<Booking> findByStatus(String status) {
-        return bookings.stream()
-                .filter(b -> b.getStatus().equals(status))
-                .collect(Collectors.toList());
+        return resolve(bookingsByStatus.get(status), b -> status.equals(b.getStatus()));
+    }
+
+    /**
+     * Walks the smaller of the two index sets and checks the other condition per booking.
+     */
+    public List<Booking> findByUserIdAndStatus(String userId, String status) {
+        Set<String> byUser = bookingsByUser.getOrDefault(userId, Collections.emptySet());
+        Set<String> byStatus = bookingsByStatus.getOrDefault(status, Collections.emptySet());
+        Set<String> smaller = byUser.size() <= byStatus.size() ? byUser : byStatus;
+        return resolve(smaller, b -> userId.equals(b.getUserId()) && status.equals(b.getStatus()));
     }
 
+    /**
+     * Writes of bookings of the same session must be serialized by the caller
+     * (BookingService holds the session lock), so the seat index matches the bookings.
+     */
     public Booking save(Booking booking) {
-        bookings.removeIf(b -> b.getId().equals(booking.getId()));
-        bookings.add(booking);
+        bookings.put(booking.getId(), booking);
+        reindexKeys(booking);
+        reindexSeats(booking);
         return booking;
     }
 
     public void deleteById(String id) {
-        bookings.removeIf(b -> b.getId().equals(id));
+        bookings.remove(id);
+        BookingKeys keys = indexedKeys.remove(id);
+        if (keys != null) {
+            unindex(id, keys);
+        }
+        HeldSeats previous = heldSeats.remove(id);
+        if (previous != null) {
+            seatIndex.free(previous.sessionId(), previous.seats());
+        }
     }
 
     public boolean isSessionBooked(String sessionId) {
-        return bookings.stream()
-                .anyMatch(b -> b.getSessionId().equals(sessionId) &&
-                        !"CANCELLED".equals(b.getStatus()));
+        return findBySessionId(sessionId).stream()
+                .anyMatch(b -> holdsSeats(b.getStatus()));
+    }
+
+    /**
+     * O(1) check against the session's seat bitmap; cancelled and expired bookings do not hold seats.
+     */
+    public boolean isSeatBooked(String sessionId, int row, int number) {
+        return seatIndex.isOccupied(sessionId, row, number);
+    }
+
+    public long getSeatMapVersion(String sessionId) {
+        return seatIndex.version(sessionId);
+    }
+
+    public SeatMapSnapshot getSeatMap(String sessionId) {
+        return seatIndex.snapshot(sessionId);
+    }
+
+    /**
+     * Lock-free claim of all given seats, or none of them, ahead of saving the booking.
+     *
+     * @return the first seat that was already taken; empty if every seat was claimed
+     */
+    public Optional<Seat> claimSeats(String sessionId, List<Seat> seats) {
+        return seatIndex.tryClaim(sessionId, seats);
+    }
+
+    /**
+     * Returns seats taken by {@link #claimSeats} when the booking is not saved after all.
+     */
+    public void releaseClaimedSeats(String sessionId, List<Seat> seats) {
+        seatIndex.free(sessionId, seats);
+    }
+
+    private void reindexKeys(Booking booking) {
+        BookingKeys current = new BookingKeys(booking.getUserId(), booking.getStatus(), booking.getSessionId());
+        BookingKeys previous = indexedKeys.put(booking.getId(), current);
+        if (current.equals(previous)) {
+            return;
+        }
+        // Add before removing so a concurrent reader never misses the booking entirely
+        addToIndex(bookingsByUser, current.userId(), booking.getId());
+        addToIndex(bookingsByStatus, current.status(), booking.getId());
+        addToIndex(bookingsBySession, current.sessionId(), booking.getId());
+        if (previous != null) {
+            if (!Objects.equals(previous.userId(), current.userId())) {
+                removeFromIndex(bookingsByUser, previous.userId(), booking.getId());
+            }
+            if (!Objects.equals(previous.status(), current.status())) {
+                removeFromIndex(bookingsByStatus, previous.status(), booking.getId());
+            }
+            if (!Objects.equals(previous.sessionId(), current.sessionId())) {
+                removeFromIndex(bookingsBySession, previous.sessionId(), booking.getId());
+            }
+        }
+    }
+
+    private void unindex(String id, BookingKeys keys) {
+        removeFromIndex(bookingsByUser, keys.userId(), id);
+        removeFromIndex(bookingsByStatus, keys.status(), id);
+        removeFromIndex(bookingsBySession, keys.sessionId(), id);
+    }
+
+    /**
+     * Looks up indexed ids in the primary map, in creation order. {@code stillMatches}
+     * re-checks the live booking, which may already be mutated ahead of its save.
+     */
+    private List<Booking> resolve(Set<String> ids, Predicate<Booking> stillMatches) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> ordered = new ArrayList<>(ids);
+        ordered.sort(ID_ORDER);
+        List<Booking> result = new ArrayList<>(ordered.size());
+        for (String id : ordered) {
+            Booking booking = bookings.get(id);
+            if (booking != null && stillMatches.test(booking)) {
+                result.add(booking);
+            }
+        }
+        return result;
+    }
+
+    private static void addToIndex(Map<String, Set<String>> index, String key, String id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
     }
 
-    public boolean isSeatBooked(String sessionId, String seatId) {
-        return bookings.stream()
-                .filter(b -> b.getSessionId().equals(sessionId) &&
-                        !"CANCELLED".equals(b.getStatus()))
-                .flatMap(b -> b.getSeats().stream())
-                .anyMatch(s -> s.getSeatId().equals(seatId));
+    private static void removeFromIndex(Map<String, Set<String>> index, String key, String id) {
+        if (key != null) {
+            index.computeIfPresent(key, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private void reindexSeats(Booking booking) {
+        HeldSeats previous = heldSeats.get(booking.getId());
+        HeldSeats current = holdsSeats(booking.getStatus()) && booking.getSeats() != null
+                ? new HeldSeats(booking.getSessionId(), List.copyOf(booking.getSeats())) : null;
+
+        // Unchanged seats stay set throughout: freeing and re-setting them would open a
+        // window in which a lock-free claim could take a seat this booking still holds.
+        if (previous != null && previous.sameSeatsAs(current)) {
+            return;
+        }
+        if (previous != null) {
+            seatIndex.free(previous.sessionId(), previous.seats());
+            heldSeats.remove(booking.getId());
+        }
+        if (current != null) {
+            seatIndex.occupy(current.sessionId(), current.seats());
+            heldSeats.put(booking.getId(), current);
+        }
+    }
+
+    // Cancelled and expired bookings give their seats back
+    private static boolean holdsSeats(String status) {
+        return !"CANCELLED".equals(status) && !"EXPIRED".equals(status);
+    }
+
+    private record BookingKeys(String userId, String status, String sessionId) {}
+
+    private record HeldSeats(String sessionId, List<Seat> seats) {
+        boolean sameSeatsAs(HeldSeats other) {
+            if (other == null || !sessionId.equals(other.sessionId) || seats.size() != other.seats.size()) {
+                return false;
+            }
+            for (int i = 0; i < seats.size(); i++) {
+                Seat a = seats.get(i);
+                Seat b = other.seats.get(i);
+                if (a.getRow() != b.getRow() || a.getNumber() != b.getNumber()) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
\ No newline at end of file
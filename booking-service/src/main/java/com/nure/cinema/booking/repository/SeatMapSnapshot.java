@@ -0,0 +1,9 @@
+package com.nure.cinema.booking.repository;
+
+import java.util.SortedMap;
+
+/**
+ * Occupied seats of a session: row number -> bitmap words (bit {@code n} of the row set
+ * when seat {@code n} is taken), for rows with at least one taken seat.
+ */
+public record SeatMapSnapshot(long version, SortedMap<Integer, long[]> rows) {}
@@ -0,0 +1,212 @@
+package com.nure.cinema.booking.repository;
+
+import com.nure.cinema.booking.model.Booking.Seat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Occupied seats per session as one bitmap per row: bit {@code number} of row {@code row}
+ * is set while a booking holds that seat, so a seat check is a single bit test instead of a
+ * scan over all bookings.
+ *
+ * Bits are changed with compare-and-set only, so seats can also be claimed without any lock
+ * ({@link #tryClaim}). Row bitmaps have a fixed width and are never replaced once created;
+ * growing a session only adds rows, which keeps concurrent claims on existing rows valid.
+ */
+class SeatOccupancyIndex {
+
+    static final int MAX_ROWS = 1024;
+    static final int MAX_SEATS_PER_ROW = 1024;
+
+    private static final int WORDS_PER_ROW = MAX_SEATS_PER_ROW / Long.SIZE;
+
+    private static final Comparator<Seat> SEAT_ORDER =
+            Comparator.comparingInt(Seat::getRow).thenComparingInt(Seat::getNumber);
+
+    private final Map<String, SessionSeats> sessions = new ConcurrentHashMap<>();
+
+    boolean isOccupied(String sessionId, int row, int number) {
+        SessionSeats seats = sessions.get(sessionId);
+        return seats != null && seats.isOccupied(row, number);
+    }
+
+    void occupy(String sessionId, Collection<Seat> seats) {
+        SessionSeats sessionSeats = sessions.computeIfAbsent(sessionId, id -> new SessionSeats());
+        for (Seat seat : seats) {
+            sessionSeats.trySet(seat.getRow(), seat.getNumber());
+        }
+    }
+
+    void free(String sessionId, Collection<Seat> seats) {
+        SessionSeats sessionSeats = sessions.get(sessionId);
+        if (sessionSeats == null) {
+            return;
+        }
+        for (Seat seat : seats) {
+            sessionSeats.clear(seat.getRow(), seat.getNumber());
+        }
+    }
+
+    /**
+     * Claims all seats or none. Seats are claimed in (row, number) order so competing
+     * multi-seat requests collide on their lowest common seat; on a conflict the seats
+     * claimed so far are released again.
+     *
+     * @return the first seat that was already taken; empty if every seat was claimed
+     */
+    Optional<Seat> tryClaim(String sessionId, Collection<Seat> seats) {
+        SessionSeats sessionSeats = sessions.computeIfAbsent(sessionId, id -> new SessionSeats());
+        List<Seat> ordered = new ArrayList<>(seats);
+        ordered.sort(SEAT_ORDER);
+
+        for (int i = 0; i < ordered.size(); i++) {
+            Seat seat = ordered.get(i);
+            if (!sessionSeats.trySet(seat.getRow(), seat.getNumber())) {
+                for (int j = 0; j < i; j++) {
+                    sessionSeats.clear(ordered.get(j).getRow(), ordered.get(j).getNumber());
+                }
+                return Optional.of(seat);
+            }
+        }
+        return Optional.empty();
+    }
+
+    long version(String sessionId) {
+        SessionSeats seats = sessions.get(sessionId);
+        return seats != null ? seats.version.get() : 0;
+    }
+
+    /**
+     * Copies the occupied-seat words of every non-empty row, together with the version
+     * the copy corresponds to. Retries while seats change underneath so the words and the
+     * version match; under constant churn the last copy is returned with the version read
+     * before it, which at worst makes a poller fetch once more.
+     */
+    SeatMapSnapshot snapshot(String sessionId) {
+        SessionSeats seats = sessions.get(sessionId);
+        if (seats == null) {
+            return new SeatMapSnapshot(0, new TreeMap<>());
+        }
+        SortedMap<Integer, long[]> rows;
+        long before;
+        int attempts = 0;
+        do {
+            before = seats.version.get();
+            rows = seats.copyRows();
+        } while (seats.version.get() != before && ++attempts < 3);
+        return new SeatMapSnapshot(before, rows);
+    }
+
+    private static void checkBounds(int row, int number) {
+        if (row < 0 || row >= MAX_ROWS || number < 0 || number >= MAX_SEATS_PER_ROW) {
+            throw new IllegalArgumentException("Seat row must be below " + MAX_ROWS +
+                    " and number below " + MAX_SEATS_PER_ROW);
+        }
+    }
+
+    private static final class SessionSeats {
+        private volatile AtomicLongArray[] rows = new AtomicLongArray[0];
+        // bumped after every bit that actually changes
+        private final AtomicLong version = new AtomicLong();
+
+        boolean isOccupied(int row, int number) {
+            AtomicLongArray bits = row(row);
+            return bits != null && number >= 0 && number < MAX_SEATS_PER_ROW &&
+                    (bits.get(number >>> 6) & (1L << number)) != 0;
+        }
+
+        /**
+         * @return false if the seat was already occupied
+         */
+        boolean trySet(int row, int number) {
+            checkBounds(row, number);
+            AtomicLongArray bits = rowForWrite(row);
+            int word = number >>> 6;
+            long mask = 1L << number;
+            while (true) {
+                long current = bits.get(word);
+                if ((current & mask) != 0) {
+                    return false;
+                }
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    version.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        void clear(int row, int number) {
+            AtomicLongArray bits = row(row);
+            if (bits == null || number < 0 || number >= MAX_SEATS_PER_ROW) {
+                return;
+            }
+            int word = number >>> 6;
+            long mask = 1L << number;
+            while (true) {
+                long current = bits.get(word);
+                if ((current & mask) == 0) {
+                    return;
+                }
+                if (bits.compareAndSet(word, current, current & ~mask)) {
+                    version.incrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        SortedMap<Integer, long[]> copyRows() {
+            SortedMap<Integer, long[]> copy = new TreeMap<>();
+            AtomicLongArray[] current = rows;
+            for (int row = 0; row < current.length; row++) {
+                AtomicLongArray bits = current[row];
+                if (bits == null) {
+                    continue;
+                }
+                long[] words = new long[WORDS_PER_ROW];
+                boolean any = false;
+                for (int w = 0; w < WORDS_PER_ROW; w++) {
+                    words[w] = bits.get(w);
+                    any |= words[w] != 0;
+                }
+                if (any) {
+                    copy.put(row, words);
+                }
+            }
+            return copy;
+        }
+
+        private AtomicLongArray row(int row) {
+            AtomicLongArray[] current = rows;
+            return row >= 0 && row < current.length ? current[row] : null;
+        }
+
+        private AtomicLongArray rowForWrite(int row) {
+            AtomicLongArray bits = row(row);
+            return bits != null ? bits : createRow(row);
+        }
+
+        // Rare: only when a session first sees a row. Existing row objects are carried over.
+        private synchronized AtomicLongArray createRow(int row) {
+            AtomicLongArray[] current = rows;
+            if (row < current.length && current[row] != null) {
+                return current[row];
+            }
+            AtomicLongArray[] grown = row < current.length
+                    ? current.clone() : Arrays.copyOf(current, Math.min(MAX_ROWS, Math.max(row + 1, current.length * 2)));
+            grown[row] = new AtomicLongArray(WORDS_PER_ROW);
+            rows = grown;
+            return grown[row];
+        }
+    }
+}
@@ -2,16 +2,30 @@ package com.nure.cinema.booking.service;
 
 import com.nure.cinema.booking.client.MovieServiceClient;
 import com.nure.cinema.booking.dto.*;
+import com.nure.cinema.booking.dto.ConfirmBookingsResponse.ConfirmationResultDTO;
 import com.nure.cinema.booking.exception.BookingNotFoundException;
 import com.nure.cinema.booking.exception.SeatAlreadyBookedException;
 import com.nure.cinema.booking.model.Booking;
 import com.nure.cinema.booking.model.Booking.Price;
 import com.nure.cinema.booking.model.Booking.Seat;
 import com.nure.cinema.booking.repository.BookingRepository;
+import com.nure.cinema.booking.repository.SeatMapSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -22,10 +36,45 @@ public class BookingService {
     private final MovieServiceClient movieServiceClient;
     private final AtomicInteger idCounter = new AtomicInteger(1003);
 
+    // Serializes seat check + save per session; the IPC call to Movie Service stays outside
+    private final SessionLocks sessionLocks;
+
+    private final HoldExpiryWheel holdExpiryWheel;
+
+    // "cas": new bookings claim seats lock-free on the seat bitmap instead of taking the session lock
+    private final boolean casSeatClaims;
+
+    private final int maxConfirmationBatch;
+
+    private final Duration holdDuration;
+
     public BookingService(BookingRepository bookingRepository,
-                          MovieServiceClient movieServiceClient) {
+                          MovieServiceClient movieServiceClient,
+                          @Value("${booking.lock-stripes:64}") int lockStripes,
+                          @Value("${booking.seat-claims:locked}") String seatClaimMode,
+                          @Value("${booking.confirmations.max-batch:500}") int maxConfirmationBatch,
+                          @Value("${booking.hold-duration:15m}") Duration holdDuration,
+                          HoldExpiryWheel holdExpiryWheel) {
         this.bookingRepository = bookingRepository;
         this.movieServiceClient = movieServiceClient;
+        this.holdExpiryWheel = holdExpiryWheel;
+        this.maxConfirmationBatch = maxConfirmationBatch;
+        this.holdDuration = holdDuration;
+        this.sessionLocks = new SessionLocks(lockStripes);
+        if (!List.of("locked", "cas").contains(seatClaimMode)) {
+            throw new IllegalArgumentException("booking.seat-claims must be 'locked' or 'cas', got: " + seatClaimMode);
+        }
+        this.casSeatClaims = "cas".equals(seatClaimMode);
+        System.out.println("[BOOKING] Seat claim mode: " + seatClaimMode);
+
+        // One-time registration of holds that exist at startup; afterwards holds are
+        // added as bookings are created
+        for (Booking booking : bookingRepository.findByStatus("PENDING")) {
+            if (booking.getExpiresAt() != null) {
+                holdExpiryWheel.schedule(booking.getId(), booking.getExpiresAt());
+            }
+        }
+        holdExpiryWheel.start(this::expireBookings);
     }
 
     public List<BookingDTO> getAllBookings() {
@@ -52,6 +101,49 @@ public class BookingService {
                 .collect(Collectors.toList());
     }
 
+    public List<BookingDTO> getBookingsByUserIdAndStatus(String userId, String status) {
+        return bookingRepository.findByUserIdAndStatus(userId, status).stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
+    public long getSeatMapVersion(String sessionId) {
+        return bookingRepository.getSeatMapVersion(sessionId);
+    }
+
+    /**
+     * Taken seats of a session, one base64 bit array per row with at least one taken seat.
+     */
+    public SeatMapDTO getSeatMap(String sessionId) {
+        SeatMapSnapshot snapshot = bookingRepository.getSeatMap(sessionId);
+
+        List<SeatMapDTO.RowDTO> rows = new ArrayList<>(snapshot.rows().size());
+        int occupied = 0;
+        for (Map.Entry<Integer, long[]> row : snapshot.rows().entrySet()) {
+            long[] words = row.getValue();
+            byte[] bytes = new byte[words.length * Long.BYTES];
+            int length = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (words[i / Long.BYTES] >>> ((i % Long.BYTES) * 8));
+                if (bytes[i] != 0) {
+                    length = i + 1;
+                }
+            }
+            for (long word : words) {
+                occupied += Long.bitCount(word);
+            }
+            rows.add(new SeatMapDTO.RowDTO(row.getKey(),
+                    Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, length))));
+        }
+
+        SeatMapDTO dto = new SeatMapDTO();
+        dto.setSessionId(sessionId);
+        dto.setVersion(snapshot.version());
+        dto.setOccupiedSeats(occupied);
+        dto.setRows(rows);
+        return dto;
+    }
+
     public BookingDTO createBooking(CreateBookingRequest request) {
         validateBookingRequest(request);
 
@@ -92,16 +184,37 @@ public class BookingService {
             );
         }
 
-        // Check if requested seats are already booked
-        checkSeatsAvailability(request.getSessionId(), request.getSeats());
+        if (casSeatClaims) {
+            return claimAndSaveNewBooking(request, session);
+        }
+        return sessionLocks.withLock(request.getSessionId(), () -> {
+            // Check if requested seats are already booked
+            checkSeatsAvailability(request.getSessionId(), request.getSeats());
+            return saveNewBooking(request, session, toSeats(request));
+        });
+    }
+
+    /**
+     * Lock-free path for on-sales: seats are claimed with compare-and-set on the seat bitmap
+     * (all or none) and the booking record is only written once the claim succeeded.
+     */
+    private BookingDTO claimAndSaveNewBooking(CreateBookingRequest request, MovieSessionDTO session) {
+        List<Seat> seats = toSeats(request);
+        bookingRepository.claimSeats(request.getSessionId(), seats).ifPresent(taken -> {
+            throw seatTaken(request.getSessionId(), taken.getSeatId(), taken.getRow(), taken.getNumber());
+        });
+        try {
+            return saveNewBooking(request, session, seats);
+        } catch (RuntimeException e) {
+            bookingRepository.releaseClaimedSeats(request.getSessionId(), seats);
+            throw e;
+        }
+    }
 
+    private BookingDTO saveNewBooking(CreateBookingRequest request, MovieSessionDTO session, List<Seat> seats) {
         String newId = "bk-" + String.format("%04d", idCounter.getAndIncrement());
         LocalDateTime now = LocalDateTime.now();
 
-        List<Seat> seats = request.getSeats().stream()
-                .map(s -> new Seat(s.getRow(), s.getNumber(), s.getSeatId()))
-                .collect(Collectors.toList());
-
         // Use price from Movie Service session
         Price totalPrice = new Price(
                 session.getPrice().getValue() * seats.size(),
@@ -118,12 +231,13 @@ public class BookingService {
                 totalPrice,
                 "PENDING",
                 now,
-                now.plusMinutes(15),
+                now.plus(holdDuration),
                 null,
                 request.getNotes()
         );
 
         Booking savedBooking = bookingRepository.save(booking);
+        holdExpiryWheel.schedule(savedBooking.getId(), savedBooking.getExpiresAt());
 
         System.out.println("[IPC SUCCESS] Booking " + newId + " created for session " +
                 request.getSessionId() + " (validated via Movie Service)");
@@ -131,10 +245,22 @@ public class BookingService {
         return convertToDTO(savedBooking);
     }
 
+    private List<Seat> toSeats(CreateBookingRequest request) {
+        return request.getSeats().stream()
+                .map(s -> new Seat(s.getRow(), s.getNumber(), s.getSeatId()))
+                .collect(Collectors.toList());
+    }
+
     public BookingDTO updateBooking(String id, UpdateBookingRequest request) {
         Booking existingBooking = bookingRepository.findById(id)
                 .orElseThrow(() -> new BookingNotFoundException("Booking with ID " + id + " not found"));
 
+        return sessionLocks.withLock(existingBooking.getSessionId(), () -> applyUpdate(existingBooking, request));
+    }
+
+    private BookingDTO applyUpdate(Booking existingBooking, UpdateBookingRequest request) {
+        String id = existingBooking.getId();
+        ensureStillExists(id);
         if (request.getStatus() != null) {
             validateStatusTransition(existingBooking.getStatus(), request.getStatus());
             existingBooking.setStatus(request.getStatus());
@@ -160,10 +286,23 @@ public class BookingService {
         Booking booking = bookingRepository.findById(id)
                 .orElseThrow(() -> new BookingNotFoundException("Booking with ID " + id + " not found"));
 
+        sessionLocks.withLock(booking.getSessionId(), () -> {
+            applyCancellation(booking);
+            return null;
+        });
+    }
+
+    private void applyCancellation(Booking booking) {
+        String id = booking.getId();
+        ensureStillExists(id);
         if ("CANCELLED".equals(booking.getStatus())) {
             throw new IllegalArgumentException("Booking " + id + " is already cancelled");
         }
 
+        if ("EXPIRED".equals(booking.getStatus())) {
+            throw new IllegalArgumentException("Booking " + id + " has already expired");
+        }
+
         if ("CONFIRMED".equals(booking.getStatus())) {
             throw new IllegalArgumentException(
                     "Cannot cancel confirmed booking " + id + ". Please contact support for assistance."
@@ -176,11 +315,123 @@ public class BookingService {
     }
 
     public void deleteBooking(String id) {
+        Booking booking = bookingRepository.findById(id)
+                .orElseThrow(() -> new BookingNotFoundException("Booking with ID " + id + " not found"));
+        sessionLocks.withLock(booking.getSessionId(), () -> {
+            bookingRepository.deleteById(id);
+            return null;
+        });
+        System.out.println("[DELETION] Booking " + id + " deleted from system");
+    }
+
+    /**
+     * Confirms several bookings in one call. Each booking gets the outcome PUT /api/bookings/{id}
+     * with status CONFIRMED would have had; one failing booking does not fail the others. Like
+     * {@link #expireBookings}, bookings are grouped so each session lock is taken once.
+     */
+    public ConfirmBookingsResponse confirmBookings(ConfirmBookingsRequest request) {
+        if (request.getBookingIds() == null || request.getBookingIds().isEmpty()) {
+            throw new IllegalArgumentException("bookingIds is required and cannot be empty");
+        }
+        if (request.getBookingIds().size() > maxConfirmationBatch) {
+            throw new IllegalArgumentException("At most " + maxConfirmationBatch +
+                    " bookings can be confirmed per request. Provided: " + request.getBookingIds().size());
+        }
+
+        Map<String, ConfirmationResultDTO> results = new LinkedHashMap<>();
+        Map<String, List<Booking>> bySession = new HashMap<>();
+        for (String id : request.getBookingIds()) {
+            if (results.containsKey(id)) {
+                continue;
+            }
+            results.put(id, null);
+            Optional<Booking> booking = bookingRepository.findById(id);
+            if (booking.isPresent()) {
+                bySession.computeIfAbsent(booking.get().getSessionId(), s -> new ArrayList<>()).add(booking.get());
+            } else {
+                results.put(id, new ConfirmationResultDTO(id, HttpStatus.NOT_FOUND.value(), null,
+                        "Booking with ID " + id + " not found"));
+            }
+        }
+
+        UpdateBookingRequest confirm = new UpdateBookingRequest();
+        confirm.setStatus("CONFIRMED");
+        for (Map.Entry<String, List<Booking>> entry : bySession.entrySet()) {
+            sessionLocks.withLock(entry.getKey(), () -> {
+                for (Booking booking : entry.getValue()) {
+                    results.put(booking.getId(), confirmOne(booking, confirm));
+                }
+                return null;
+            });
+        }
+
+        ConfirmBookingsResponse response = new ConfirmBookingsResponse();
+        response.setResults(new ArrayList<>(results.values()));
+        response.setConfirmed((int) results.values().stream()
+                .filter(r -> r.getStatus() == HttpStatus.OK.value())
+                .count());
+        response.setFailed(results.size() - response.getConfirmed());
+        System.out.println("[BULK CONFIRM] " + response.getConfirmed() + " of " + results.size() +
+                " booking(s) confirmed");
+        return response;
+    }
+
+    private ConfirmationResultDTO confirmOne(Booking booking, UpdateBookingRequest confirm) {
+        String id = booking.getId();
+        try {
+            BookingDTO confirmed = applyUpdate(booking, confirm);
+            return new ConfirmationResultDTO(id, HttpStatus.OK.value(), confirmed.getStatus(), null);
+        } catch (BookingNotFoundException e) {
+            return new ConfirmationResultDTO(id, HttpStatus.NOT_FOUND.value(), null, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return new ConfirmationResultDTO(id, HttpStatus.BAD_REQUEST.value(), booking.getStatus(), e.getMessage());
+        }
+    }
+
+    /**
+     * Called by the hold expiry wheel with due booking ids. Bookings are grouped by session so
+     * each session lock is taken once per batch; bookings confirmed or cancelled in the meantime
+     * are skipped. A pending booking whose hold has not run out yet goes back on the wheel, so
+     * its seats are still released once it does.
+     */
+    private void expireBookings(List<String> bookingIds) {
+        Map<String, List<Booking>> bySession = new HashMap<>();
+        for (String id : bookingIds) {
+            bookingRepository.findById(id)
+                    .ifPresent(b -> bySession.computeIfAbsent(b.getSessionId(), s -> new ArrayList<>()).add(b));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int expired = 0;
+        for (Map.Entry<String, List<Booking>> entry : bySession.entrySet()) {
+            expired += sessionLocks.withLock(entry.getKey(), () -> {
+                int count = 0;
+                for (Booking booking : entry.getValue()) {
+                    if (!"PENDING".equals(booking.getStatus()) || booking.getExpiresAt() == null ||
+                            bookingRepository.findById(booking.getId()).isEmpty()) {
+                        continue;
+                    }
+                    if (booking.getExpiresAt().isAfter(now)) {
+                        holdExpiryWheel.schedule(booking.getId(), booking.getExpiresAt());
+                        continue;
+                    }
+                    booking.setStatus("EXPIRED");
+                    bookingRepository.save(booking);
+                    count++;
+                }
+                return count;
+            });
+        }
+        if (expired > 0) {
+            System.out.println("[HOLD EXPIRY] " + expired + " pending booking(s) expired, seats released");
+        }
+    }
+
+    // Re-checked under the session lock so a concurrent delete is not undone by a later save
+    private void ensureStillExists(String id) {
         if (bookingRepository.findById(id).isEmpty()) {
             throw new BookingNotFoundException("Booking with ID " + id + " not found");
         }
-        bookingRepository.deleteById(id);
-        System.out.println("[DELETION] Booking " + id + " deleted from system");
     }
 
     private BookingDTO convertToDTO(Booking booking) {
@@ -239,6 +490,7 @@ public class BookingService {
         }
 
         // Validate seat data
+        Set<String> requestedSeats = new HashSet<>();
         for (CreateBookingRequest.SeatRequest seat : request.getSeats()) {
             if (seat.getSeatId() == null || seat.getSeatId().trim().isEmpty()) {
                 throw new IllegalArgumentException("Seat ID is required for all seats");
@@ -246,27 +498,43 @@ public class BookingService {
             if (seat.getRow() <= 0 || seat.getNumber() <= 0) {
                 throw new IllegalArgumentException("Seat row and number must be positive");
             }
+            if (seat.getRow() >= BookingRepository.MAX_ROWS || seat.getNumber() >= BookingRepository.MAX_SEATS_PER_ROW) {
+                throw new IllegalArgumentException("Seat row must be below " + BookingRepository.MAX_ROWS +
+                        " and number below " + BookingRepository.MAX_SEATS_PER_ROW);
+            }
+            if (!requestedSeats.add(seat.getRow() + ":" + seat.getNumber())) {
+                throw new IllegalArgumentException("Seat " + seat.getSeatId() + " is requested more than once");
+            }
         }
     }
 
     private void checkSeatsAvailability(String sessionId, List<CreateBookingRequest.SeatRequest> requestedSeats) {
         for (CreateBookingRequest.SeatRequest seat : requestedSeats) {
-            if (bookingRepository.isSeatBooked(sessionId, seat.getSeatId())) {
-                throw new SeatAlreadyBookedException(
-                        "Seat " + seat.getSeatId() + " (Row " + seat.getRow() + ", Number " +
-                                seat.getNumber() + ") is already booked for session " + sessionId +
-                                ". Please select a different seat."
-                );
+            if (bookingRepository.isSeatBooked(sessionId, seat.getRow(), seat.getNumber())) {
+                throw seatTaken(sessionId, seat.getSeatId(), seat.getRow(), seat.getNumber());
             }
         }
     }
 
+    private SeatAlreadyBookedException seatTaken(String sessionId, String seatId, int row, int number) {
+        return new SeatAlreadyBookedException(
+                "Seat " + seatId + " (Row " + row + ", Number " +
+                        number + ") is already booked for session " + sessionId +
+                        ". Please select a different seat."
+        );
+    }
+
     private void validateStatusTransition(String currentStatus, String newStatus) {
         if ("CANCELLED".equals(currentStatus)) {
             throw new IllegalArgumentException(
                     "Cannot change status of cancelled booking. Current status: CANCELLED"
             );
         }
+        if ("EXPIRED".equals(currentStatus)) {
+            throw new IllegalArgumentException(
+                    "Cannot change status of expired booking. Current status: EXPIRED"
+            );
+        }
         if ("CONFIRMED".equals(currentStatus) && "PENDING".equals(newStatus)) {
             throw new IllegalArgumentException(
                     "Cannot change confirmed booking back to pending. " +
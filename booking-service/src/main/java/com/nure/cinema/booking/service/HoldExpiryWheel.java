@@ -0,0 +1,153 @@
+package com.nure.cinema.booking.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for booking holds.
+ *
+ * A hold expiring at tick {@code t} goes into slot {@code t mod wheelSize}, so scheduling is
+ * O(1) no matter how many holds are pending. Every tick only the current slot is visited;
+ * holds whose deadline lies one or more wheel turns ahead stay in place. Due booking ids are
+ * handed to the expirer in batches. The wheel never scans the booking repository.
+ *
+ * A hold never fires before its deadline: the deadline is rounded up to the next tick. Holds
+ * are not removed when a booking is confirmed or cancelled: the expirer re-checks the booking
+ * and ignores ones that are no longer pending. If the expirer fails, the batch is put back and
+ * retried on the next tick.
+ */
+@Component
+public class HoldExpiryWheel {
+
+    private final long tickMillis;
+    private final int batchSize;
+    private final List<Queue<Hold>> slots;
+    private final int mask;
+
+    private final AtomicLong pending = new AtomicLong();
+    private long lastProcessedTick;
+
+    private Consumer<List<String>> expirer;
+    private ScheduledExecutorService ticker;
+
+    public HoldExpiryWheel(@Value("${booking.expiry.tick-millis:1000}") long tickMillis,
+                           @Value("${booking.expiry.wheel-size:512}") int wheelSize,
+                           @Value("${booking.expiry.batch-size:500}") int batchSize) {
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new ConcurrentLinkedQueue<>());
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Starts ticking; {@code expirer} receives ids of bookings whose hold ran out.
+     */
+    public synchronized void start(Consumer<List<String>> expirer) {
+        if (ticker != null) {
+            return;
+        }
+        this.expirer = expirer;
+        this.lastProcessedTick = currentTick() - 1;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "booking-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void schedule(String bookingId, LocalDateTime expiresAt) {
+        // Rounded up: tick t starts at t * tickMillis, so firing at that tick is never early
+        long deadlineTick = Math.ceilDiv(toMillis(expiresAt), tickMillis);
+        // Anything already due fires on the next tick
+        long tick = Math.max(deadlineTick, currentTick() + 1);
+        add(new Hold(bookingId, tick), tick);
+    }
+
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private void advance() {
+        try {
+            long now = currentTick();
+            List<Hold> due = new ArrayList<>();
+            // Catch up on ticks missed while the thread was delayed
+            for (long tick = lastProcessedTick + 1; tick <= now; tick++) {
+                Iterator<Hold> holds = slots.get((int) (tick & mask)).iterator();
+                while (holds.hasNext()) {
+                    Hold hold = holds.next();
+                    if (hold.deadlineTick() <= tick) {
+                        holds.remove();
+                        pending.decrementAndGet();
+                        due.add(hold);
+                        if (due.size() >= batchSize) {
+                            expire(due, now);
+                            due = new ArrayList<>();
+                        }
+                    }
+                }
+                lastProcessedTick = tick;
+            }
+            if (!due.isEmpty()) {
+                expire(due, now);
+            }
+        } catch (RuntimeException e) {
+            // keep the wheel turning; unprocessed holds stay in their slots
+            System.err.println("[HOLD EXPIRY] Tick failed: " + e.getMessage());
+        }
+    }
+
+    private void expire(List<Hold> due, long now) {
+        try {
+            expirer.accept(due.stream().map(Hold::bookingId).toList());
+        } catch (RuntimeException e) {
+            // the holds are already out of their slots: put them back for the next tick
+            for (Hold hold : due) {
+                add(hold, now + 1);
+            }
+            System.err.println("[HOLD EXPIRY] Expiring " + due.size() + " hold(s) failed, retrying next tick: " +
+                    e.getMessage());
+        }
+    }
+
+    private void add(Hold hold, long tick) {
+        slots.get((int) (tick & mask)).add(hold);
+        pending.incrementAndGet();
+    }
+
+    private long currentTick() {
+        return System.currentTimeMillis() / tickMillis;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record Hold(String bookingId, long deadlineTick) {}
+}
@@ -0,0 +1,41 @@
+package com.nure.cinema.booking.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of striped locks keyed by session id. Bookings of one session always map to the
+ * same stripe and are serialized; different sessions usually hit different stripes and run
+ * in parallel. Memory stays constant no matter how many sessions exist.
+ */
+class SessionLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    SessionLocks(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    <T> T withLock(String sessionId, Supplier<T> action) {
+        ReentrantLock lock = stripeFor(sessionId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock stripeFor(String sessionId) {
+        int hash = sessionId.hashCode();
+        // spread high bits so ids differing only in their tail still hit different stripes
+        hash ^= (hash >>> 16);
+        return stripes[hash & mask];
+    }
+}
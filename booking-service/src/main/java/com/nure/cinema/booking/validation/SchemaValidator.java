@@ -68,7 +68,7 @@ public class SchemaValidator {
                     "currency": {"type": "string", "pattern": "^[A-Z]{3}$"}
                   }
                 },
-                "status": {"type": "string", "enum": ["PENDING", "CONFIRMED", "CANCELLED"]}
+                "status": {"type": "string", "enum": ["PENDING", "CONFIRMED", "CANCELLED", "EXPIRED"]}
               }
             }
             """;
@@ -0,0 +1,177 @@
+package com.nure.cinema.booking.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.nure.cinema.booking.cache.MovieSessionCache;
+import com.nure.cinema.booking.dto.MovieSessionDTO;
+import com.nure.cinema.booking.validation.SchemaValidator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Thundering herd against a stub Movie Service: many concurrent getSession calls for one
+ * session must reach Movie Service once.
+ */
+class MovieServiceClientLoadTest {
+
+    private static final int CALLERS = 200;
+
+    private final Map<String, AtomicInteger> requestsBySession = new ConcurrentHashMap<>();
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+    private final ExecutorService callerThreads = Executors.newFixedThreadPool(CALLERS);
+    private HttpServer server;
+    private MovieServiceClient client;
+
+    @BeforeEach
+    void startStubMovieService() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/movies/sessions/", this::serveSession);
+        server.setExecutor(serverThreads);
+        server.start();
+
+        ObjectMapper objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        MovieSessionCache cache = new MovieSessionCache(1000, Duration.ofSeconds(30), Duration.ofSeconds(10),
+                Duration.ofMinutes(5));
+        client = new MovieServiceClient("movie-service", Duration.ofSeconds(5), 4, 1000, "round-robin", 5,
+                Duration.ofSeconds(10), Duration.ofMinutes(5), objectMapper, new SchemaValidator(objectMapper),
+                discoveryClient(server.getAddress().getPort()), cache);
+    }
+
+    @AfterEach
+    void stop() {
+        callerThreads.shutdownNow();
+        client.shutdown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void concurrentLookupsOfOneSessionMakeOneCall() throws Exception {
+        List<MovieSessionDTO> sessions = herd(i -> "sess-1001");
+
+        assertEquals(1, requests("sess-1001"), CALLERS + " concurrent lookups, outbound calls");
+        sessions.forEach(session -> assertEquals("sess-1001", session.getId()));
+    }
+
+    @Test
+    void concurrentLookupsShareAFailure() throws Exception {
+        List<MovieSessionDTO> sessions = herd(i -> "sess-5000");
+
+        assertEquals(1, requests("sess-5000"), CALLERS + " concurrent failing lookups, outbound calls");
+        sessions.forEach(session -> assertNull(session, "every caller sees the failure"));
+    }
+
+    @Test
+    void lookupsOfDifferentSessionsAreNotCoalesced() throws Exception {
+        herd(i -> "sess-" + (2000 + i % 10));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, requests("sess-" + (2000 + i)));
+        }
+    }
+
+    /**
+     * Releases {@link #CALLERS} threads at once, caller {@code i} looking up {@code sessionIdFor(i)}.
+     */
+    private List<MovieSessionDTO> herd(IntFunction<String> sessionIdFor) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<MovieSessionDTO>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            String sessionId = sessionIdFor.apply(i);
+            calls.add(callerThreads.submit(() -> {
+                start.await();
+                return client.getSession(sessionId);
+            }));
+        }
+        start.countDown();
+        List<MovieSessionDTO> sessions = new ArrayList<>();
+        for (Future<MovieSessionDTO> call : calls) {
+            sessions.add(call.get(10, TimeUnit.SECONDS));
+        }
+        return sessions;
+    }
+
+    private int requests(String sessionId) {
+        AtomicInteger count = requestsBySession.get(sessionId);
+        return count != null ? count.get() : 0;
+    }
+
+    // Slow enough that every caller arrives while the first request is still in flight
+    private void serveSession(HttpExchange exchange) throws IOException {
+        String sessionId = exchange.getRequestURI().getPath().substring("/api/movies/sessions/".length());
+        requestsBySession.computeIfAbsent(sessionId, id -> new AtomicInteger()).incrementAndGet();
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (sessionId.equals("sess-5000")) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = ("""
+                {"id":"%s","movieId":"mov-1","hallId":"hall-1",
+                 "startTime":"2026-11-01T18:00:00","endTime":"2026-11-01T20:00:00",
+                 "price":{"value":8.0,"currency":"EUR"},"availableSeats":100,"status":"Scheduled"}
+                """.formatted(sessionId)).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static DiscoveryClient discoveryClient(int port) {
+        ServiceInstance instance = new DefaultServiceInstance("movie-service-1", "movie-service",
+                "localhost", port, false);
+        return new DiscoveryClient() {
+            @Override
+            public String description() {
+                return "stub";
+            }
+
+            @Override
+            public List<ServiceInstance> getInstances(String serviceId) {
+                return List.of(instance);
+            }
+
+            @Override
+            public List<String> getServices() {
+                return List.of("movie-service");
+            }
+        };
+    }
+}
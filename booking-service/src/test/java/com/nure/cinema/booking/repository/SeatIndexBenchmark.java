@@ -0,0 +1,114 @@
+package com.nure.cinema.booking.repository;
+
+import com.nure.cinema.booking.model.Booking;
+import com.nure.cinema.booking.model.Booking.Price;
+import com.nure.cinema.booking.model.Booking.Seat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Availability check of a 10-seat group booking, as BookingService does it before a booking:
+ * the per-session seat bitmaps of {@link BookingRepository} against the former check, which
+ * streamed every booking and compared seat ids ({@link #listScan}).
+ *
+ * Bookings hold 2 seats each and fill 20x30 halls one session after another.
+ *
+ * mvn -Pbenchmark verify -Dbenchmark="SeatIndexBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SeatIndexBenchmark {
+
+    private static final int ROWS = 20;
+    private static final int SEATS_PER_ROW = 30;
+    private static final int BOOKINGS_PER_SESSION = ROWS * SEATS_PER_ROW / 2;
+    private static final int GROUP_SIZE = 10;
+
+    @Param({"10000", "1000000"})
+    public int bookings;
+
+    private BookingRepository repository;
+    private List<Booking> bookingList;
+    private int sessions;
+
+    @Setup
+    public void setUp() {
+        repository = new BookingRepository();
+        bookingList = new ArrayList<>(repository.findAll());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < bookings; i++) {
+            int seat = (i % BOOKINGS_PER_SESSION) * 2;
+            int row = seat / SEATS_PER_ROW + 1;
+            int number = seat % SEATS_PER_ROW + 1;
+            Booking booking = new Booking("bench-" + i, "bench-sess-" + (i / BOOKINGS_PER_SESSION),
+                    "user-" + i, "Customer", "customer@example.com",
+                    List.of(seat(row, number), seat(row, number + 1)),
+                    new Price(16.0, "EUR"), "CONFIRMED", now, null, now, null);
+            repository.save(booking);
+            bookingList.add(booking);
+        }
+        sessions = (bookings + BOOKINGS_PER_SESSION - 1) / BOOKINGS_PER_SESSION;
+    }
+
+    @Benchmark
+    public int bitmapIndex() {
+        String sessionId = randomSession();
+        int row = ThreadLocalRandom.current().nextInt(ROWS) + 1;
+        int booked = 0;
+        for (int number = 1; number <= GROUP_SIZE; number++) {
+            if (repository.isSeatBooked(sessionId, row, number)) {
+                booked++;
+            }
+        }
+        return booked;
+    }
+
+    @Benchmark
+    public int listScan() {
+        String sessionId = randomSession();
+        int row = ThreadLocalRandom.current().nextInt(ROWS) + 1;
+        int booked = 0;
+        for (int number = 1; number <= GROUP_SIZE; number++) {
+            if (scanIsSeatBooked(sessionId, "R" + row + "N" + number)) {
+                booked++;
+            }
+        }
+        return booked;
+    }
+
+    // isSeatBooked before the seat index
+    private boolean scanIsSeatBooked(String sessionId, String seatId) {
+        return bookingList.stream()
+                .filter(b -> b.getSessionId().equals(sessionId) &&
+                        !"CANCELLED".equals(b.getStatus()))
+                .flatMap(b -> b.getSeats().stream())
+                .anyMatch(s -> s.getSeatId().equals(seatId));
+    }
+
+    private String randomSession() {
+        return "bench-sess-" + ThreadLocalRandom.current().nextInt(sessions);
+    }
+
+    private static Seat seat(int row, int number) {
+        return new Seat(row, number, "R" + row + "N" + number);
+    }
+}
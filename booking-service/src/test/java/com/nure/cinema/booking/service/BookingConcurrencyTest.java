@@ -0,0 +1,145 @@
+package com.nure.cinema.booking.service;
+
+import com.nure.cinema.booking.dto.BookingDTO;
+import com.nure.cinema.booking.exception.SeatAlreadyBookedException;
+import com.nure.cinema.booking.repository.BookingRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.nure.cinema.booking.service.BookingTestData.SESSION_ID;
+import static com.nure.cinema.booking.service.BookingTestData.movieServiceClient;
+import static com.nure.cinema.booking.service.BookingTestData.request;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Seat claims under contention, for both {@code booking.seat-claims} modes.
+ */
+class BookingConcurrencyTest {
+
+    private static final int ROWS = 5;
+    private static final int SEATS_PER_ROW = 10;
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 200;
+
+    private final HoldExpiryWheel wheel = new HoldExpiryWheel(1000, 64, 500);
+
+    @AfterEach
+    void stopWheel() {
+        wheel.stop();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"locked", "cas"})
+    void noSeatIsSoldTwice(String seatClaimMode) throws Exception {
+        BookingRepository bookingRepository = new BookingRepository();
+        BookingService bookingService = bookingService(bookingRepository, seatClaimMode);
+
+        ConcurrentLinkedQueue<BookingDTO> booked = new ConcurrentLinkedQueue<>();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    // 1-4 adjacent seats, so requests overlap partially as well as fully
+                    int row = 1 + random.nextInt(ROWS);
+                    int count = 1 + random.nextInt(4);
+                    int first = 1 + random.nextInt(SEATS_PER_ROW - count + 1);
+                    int[] seats = new int[count * 2];
+                    for (int s = 0; s < count; s++) {
+                        seats[s * 2] = row;
+                        seats[s * 2 + 1] = first + s;
+                    }
+                    try {
+                        booked.add(bookingService.createBooking(request(seats)));
+                    } catch (SeatAlreadyBookedException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Set<String> sold = new HashSet<>();
+        for (BookingDTO booking : booked) {
+            for (BookingDTO.SeatDTO seat : booking.getSeats()) {
+                assertTrue(sold.add(seat.getRow() + ":" + seat.getNumber()),
+                        "seat " + seat.getRow() + ":" + seat.getNumber() + " sold twice");
+            }
+        }
+        // Every occupied seat belongs to a successful booking: rejected requests left no claims behind
+        for (int row = 1; row <= ROWS; row++) {
+            for (int number = 1; number <= SEATS_PER_ROW; number++) {
+                assertEquals(sold.contains(row + ":" + number),
+                        bookingRepository.isSeatBooked(SESSION_ID, row, number),
+                        "occupancy of seat " + row + ":" + number);
+            }
+        }
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD, booked.size() + rejected.get());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"locked", "cas"})
+    void conflictingRequestClaimsNoSeats(String seatClaimMode) {
+        BookingRepository bookingRepository = new BookingRepository();
+        BookingService bookingService = bookingService(bookingRepository, seatClaimMode);
+        bookingService.createBooking(request(1, 5));
+
+        // seats 3 and 4 sort before the taken seat and are claimed first in cas mode
+        assertThrows(SeatAlreadyBookedException.class,
+                () -> bookingService.createBooking(request(1, 3, 1, 4, 1, 5, 1, 6)));
+
+        assertFalse(bookingRepository.isSeatBooked(SESSION_ID, 1, 3));
+        assertFalse(bookingRepository.isSeatBooked(SESSION_ID, 1, 4));
+        assertFalse(bookingRepository.isSeatBooked(SESSION_ID, 1, 6));
+        assertTrue(bookingRepository.isSeatBooked(SESSION_ID, 1, 5));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"locked", "cas"})
+    void failedSaveReleasesClaimedSeats(String seatClaimMode) {
+        BookingRepository bookingRepository = spy(new BookingRepository());
+        BookingService bookingService = bookingService(bookingRepository, seatClaimMode);
+        doThrow(new IllegalStateException("storage unavailable")).when(bookingRepository).save(any());
+
+        assertThrows(IllegalStateException.class, () -> bookingService.createBooking(request(2, 1, 2, 2)));
+
+        assertFalse(bookingRepository.isSeatBooked(SESSION_ID, 2, 1));
+        assertFalse(bookingRepository.isSeatBooked(SESSION_ID, 2, 2));
+    }
+
+    private BookingService bookingService(BookingRepository bookingRepository, String seatClaimMode) {
+        // 4 stripes: sessions share locks, as they do under load
+        return new BookingService(bookingRepository, movieServiceClient(), 4, seatClaimMode, 500,
+                Duration.ofMinutes(15), wheel);
+    }
+}
@@ -0,0 +1,62 @@
+package com.nure.cinema.booking.service;
+
+import com.nure.cinema.booking.dto.BookingDTO;
+import com.nure.cinema.booking.repository.BookingRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.nure.cinema.booking.service.BookingTestData.SESSION_ID;
+import static com.nure.cinema.booking.service.BookingTestData.movieServiceClient;
+import static com.nure.cinema.booking.service.BookingTestData.request;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class BookingHoldExpiryTest {
+
+    // 50ms ticks against 130ms holds: most deadlines fall inside a tick
+    private final HoldExpiryWheel wheel = new HoldExpiryWheel(50, 64, 500);
+    private final BookingRepository bookingRepository = new BookingRepository();
+
+    @AfterEach
+    void stopWheel() {
+        wheel.stop();
+    }
+
+    @Test
+    void everyPendingHoldExpiresAndReleasesItsSeats() throws InterruptedException {
+        BookingService bookingService = new BookingService(bookingRepository, movieServiceClient(),
+                64, "locked", 500, Duration.ofMillis(130), wheel);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(bookingService.createBooking(request(1 + i / 20, 1 + i % 20)).getId());
+            // spread creation times so deadlines land at different offsets within a tick
+            if (i % 10 == 0) {
+                Thread.sleep(7);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (countWithStatus(bookingService, ids, "EXPIRED") < ids.size() &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(ids.size(), countWithStatus(bookingService, ids, "EXPIRED"), "every hold expires");
+        for (int i = 0; i < 200; i++) {
+            assertFalse(bookingRepository.isSeatBooked(SESSION_ID, 1 + i / 20, 1 + i % 20), "seat released");
+        }
+    }
+
+    private static long countWithStatus(BookingService bookingService, List<String> ids, String status) {
+        return ids.stream()
+                .map(bookingService::getBookingById)
+                .map(BookingDTO::getStatus)
+                .filter(status::equals)
+                .count();
+    }
+}
@@ -0,0 +1,68 @@
+package com.nure.cinema.booking.service;
+
+import com.nure.cinema.booking.client.MovieServiceClient;
+import com.nure.cinema.booking.dto.CreateBookingRequest;
+import com.nure.cinema.booking.dto.MovieSessionDTO;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Booking requests and a Movie Service stub for service-level tests and benchmarks.
+ */
+final class BookingTestData {
+
+    static final String SESSION_ID = "sess-test";
+
+    private BookingTestData() {}
+
+    /**
+     * @return a client that knows one scheduled session with plenty of available seats
+     */
+    static MovieServiceClient movieServiceClient() {
+        MovieSessionDTO.PriceDTO price = new MovieSessionDTO.PriceDTO();
+        price.setValue(8.0);
+        price.setCurrency("EUR");
+        MovieSessionDTO session = new MovieSessionDTO();
+        session.setId(SESSION_ID);
+        session.setStatus("Scheduled");
+        session.setAvailableSeats(1000);
+        session.setPrice(price);
+
+        // A plain subclass rather than a mock: mock invocations walk the stack, which dominates benchmarks
+        return new MovieServiceClient("movie-service", Duration.ofSeconds(5), 1, 10, "round-robin", 5,
+                Duration.ofSeconds(10), Duration.ofMinutes(5), null, null, null, null) {
+            @Override
+            public MovieSessionDTO getSession(String sessionId) {
+                return SESSION_ID.equals(sessionId) ? session : null;
+            }
+
+            @Override
+            public boolean isServiceHealthy() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param seats pairs of row and number
+     */
+    static CreateBookingRequest request(int... seats) {
+        List<CreateBookingRequest.SeatRequest> seatRequests = new ArrayList<>();
+        for (int i = 0; i < seats.length; i += 2) {
+            CreateBookingRequest.SeatRequest seat = new CreateBookingRequest.SeatRequest();
+            seat.setRow(seats[i]);
+            seat.setNumber(seats[i + 1]);
+            seat.setSeatId("R" + seats[i] + "N" + seats[i + 1]);
+            seatRequests.add(seat);
+        }
+        CreateBookingRequest request = new CreateBookingRequest();
+        request.setSessionId(SESSION_ID);
+        request.setUserId("user-test");
+        request.setCustomerName("Test Customer");
+        request.setCustomerEmail("test@example.com");
+        request.setSeats(seatRequests);
+        return request;
+    }
+}
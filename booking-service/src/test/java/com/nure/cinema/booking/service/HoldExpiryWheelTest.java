@@ -0,0 +1,99 @@
+package com.nure.cinema.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HoldExpiryWheelTest {
+
+    private final HoldExpiryWheel wheel = new HoldExpiryWheel(20, 64, 500);
+
+    @AfterEach
+    void stopWheel() {
+        wheel.stop();
+    }
+
+    @Test
+    void everyHoldFiresAndNoneBeforeItsDeadline() throws InterruptedException {
+        Map<String, Long> firedAt = new ConcurrentHashMap<>();
+        wheel.start(ids -> {
+            long now = System.currentTimeMillis();
+            ids.forEach(id -> firedAt.put(id, now));
+        });
+
+        Map<String, Long> deadlines = new ConcurrentHashMap<>();
+        LocalDateTime base = LocalDateTime.now();
+        for (int i = 0; i < 200; i++) {
+            // deadlines spread over 2s and not aligned to ticks
+            LocalDateTime expiresAt = base.plusNanos(i * 10_000_000L + 7_300_000L);
+            deadlines.put("bk-" + i, toMillis(expiresAt));
+            wheel.schedule("bk-" + i, expiresAt);
+        }
+
+        awaitUntil(() -> firedAt.size() == deadlines.size(), 5_000);
+
+        assertEquals(deadlines.size(), firedAt.size(), "every hold fires");
+        deadlines.forEach((id, deadline) ->
+                assertTrue(firedAt.get(id) >= deadline, id + " fired before its deadline"));
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void holdsAreRetriedWhenTheExpirerFails() throws InterruptedException {
+        AtomicBoolean failed = new AtomicBoolean();
+        Map<String, Boolean> expired = new ConcurrentHashMap<>();
+        wheel.start(ids -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("repository unavailable");
+            }
+            ids.forEach(id -> expired.put(id, true));
+        });
+
+        LocalDateTime expiresAt = LocalDateTime.now().plusNanos(50_000_000L);
+        for (int i = 0; i < 10; i++) {
+            wheel.schedule("bk-" + i, expiresAt);
+        }
+
+        awaitUntil(() -> expired.size() == 10, 5_000);
+
+        assertTrue(failed.get());
+        assertEquals(10, expired.size(), "holds of the failed batch are expired on a later tick");
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void holdsBeyondOneWheelTurnWaitForTheirDeadline() throws InterruptedException {
+        Map<String, Boolean> expired = new ConcurrentHashMap<>();
+        wheel.start(ids -> ids.forEach(id -> expired.put(id, true)));
+
+        // 64 slots * 20ms: this deadline is more than one turn ahead
+        wheel.schedule("bk-late", LocalDateTime.now().plusNanos(1_500_000_000L));
+        Thread.sleep(1_300);
+        assertFalse(expired.containsKey("bk-late"));
+
+        awaitUntil(() -> expired.containsKey("bk-late"), 2_000);
+        assertTrue(expired.containsKey("bk-late"));
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
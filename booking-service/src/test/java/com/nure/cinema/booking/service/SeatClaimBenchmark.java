@@ -0,0 +1,138 @@
+package com.nure.cinema.booking.service;
+
+import com.nure.cinema.booking.dto.CreateBookingRequest;
+import com.nure.cinema.booking.exception.SeatAlreadyBookedException;
+import com.nure.cinema.booking.model.Booking.Seat;
+import com.nure.cinema.booking.repository.BookingRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.nure.cinema.booking.service.BookingTestData.SESSION_ID;
+import static com.nure.cinema.booking.service.BookingTestData.movieServiceClient;
+import static com.nure.cinema.booking.service.BookingTestData.request;
+
+/**
+ * Locked vs lock-free (CAS) seat claims with every thread booking seats of one session, as in
+ * an on-sale. {@link #bookOneSession} books 1-4 adjacent seats of a 20x30 hall through
+ * BookingService and, if that succeeded, deletes the booking again so seats keep cycling;
+ * rejected attempts count as operations too. {@link #claimSeatsOnly} does the same with only
+ * the claim step: seat check and occupy under the session lock, or a CAS claim.
+ *
+ * Run with increasing thread counts, e.g.:
+ * mvn -Pbenchmark verify -Dbenchmark="SeatClaimBenchmark -t 64"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeatClaimBenchmark {
+
+    private static final int ROWS = 20;
+    private static final int SEATS_PER_ROW = 30;
+
+    @Param({"locked", "cas"})
+    public String seatClaims;
+
+    private BookingService bookingService;
+    private BookingRepository bookingRepository;
+    private HoldExpiryWheel wheel;
+    private List<CreateBookingRequest> requests;
+    private List<List<Seat>> seatBlocks;
+    private SessionLocks sessionLocks;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // The service logs every booking; a synchronized PrintStream would serialize both modes alike
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()) {
+            @Override
+            public void println(String x) {
+            }
+        });
+
+        bookingRepository = new BookingRepository();
+        wheel = new HoldExpiryWheel(10, 512, 500);
+        bookingService = new BookingService(bookingRepository, movieServiceClient(), 64, seatClaims, 500,
+                Duration.ofMillis(1), wheel);
+
+        sessionLocks = new SessionLocks(64);
+        requests = new ArrayList<>();
+        seatBlocks = new ArrayList<>();
+        for (int row = 1; row <= ROWS; row++) {
+            for (int first = 1; first <= SEATS_PER_ROW; first++) {
+                for (int count = 1; count <= 4 && first + count - 1 <= SEATS_PER_ROW; count++) {
+                    int[] seats = new int[count * 2];
+                    for (int s = 0; s < count; s++) {
+                        seats[s * 2] = row;
+                        seats[s * 2 + 1] = first + s;
+                    }
+                    CreateBookingRequest request = request(seats);
+                    requests.add(request);
+                    seatBlocks.add(request.getSeats().stream()
+                            .map(seat -> new Seat(seat.getRow(), seat.getNumber(), seat.getSeatId()))
+                            .toList());
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wheel.stop();
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public boolean bookOneSession() {
+        CreateBookingRequest request = requests.get(ThreadLocalRandom.current().nextInt(requests.size()));
+        try {
+            String id = bookingService.createBooking(request).getId();
+            bookingRepository.deleteById(id);
+            return true;
+        } catch (SeatAlreadyBookedException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean claimSeatsOnly() {
+        List<Seat> seats = seatBlocks.get(ThreadLocalRandom.current().nextInt(seatBlocks.size()));
+        boolean claimed = "cas".equals(seatClaims)
+                ? bookingRepository.claimSeats(SESSION_ID, seats).isEmpty()
+                : sessionLocks.withLock(SESSION_ID, () -> {
+                    for (Seat seat : seats) {
+                        if (bookingRepository.isSeatBooked(SESSION_ID, seat.getRow(), seat.getNumber())) {
+                            return false;
+                        }
+                    }
+                    // under the lock nothing else claims, so this always succeeds
+                    return bookingRepository.claimSeats(SESSION_ID, seats).isEmpty();
+                });
+        if (claimed) {
+            bookingRepository.releaseClaimedSeats(SESSION_ID, seats);
+        }
+        return claimed;
+    }
+}
@@ -0,0 +1,144 @@
+package com.nure.cinema.movie.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of ready-to-write JSON bodies for hot single-entity reads.
+ *
+ * Every entry is stamped with the repository version of the entity it was rendered from;
+ * a lookup with a different version is a miss, so any mutation invalidates precisely even
+ * without an explicit {@link #invalidate} call. Entries are split over independently locked
+ * LRU segments so concurrent readers of different keys do not contend. Metrics are registered
+ * by Spring through {@link MeterBinder} once the cache is constructed.
+ */
+@Component
+public class ResponseByteCache implements MeterBinder {
+
+    private static final int SEGMENTS = 16;
+    private static final String CACHE_NAME = "movie-responses";
+
+    private final ObjectMapper objectMapper;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResponseByteCache(
+            @Value("${movie.response-cache.max-entries:10000}") int maxEntries,
+            ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.segments = new Segment[SEGMENTS];
+        int segmentCapacity = Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Returns the cached JSON for {@code key} at {@code version}, rendering and caching
+     * the value produced by {@code valueSupplier} on a miss.
+     */
+    public byte[] get(String key, long version, Supplier<?> valueSupplier) {
+        Segment segment = segmentFor(key);
+        CachedBody cached = segment.get(key);
+        if (cached != null && cached.version() == version) {
+            hits.increment();
+            return cached.body();
+        }
+
+        misses.increment();
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(valueSupplier.get());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        segment.put(key, new CachedBody(version, body));
+        return body;
+    }
+
+    public void invalidate(String key) {
+        segmentFor(key).remove(key);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String key) {
+        return segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME).tag("result", "hit")
+                .description("Response cache hits")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME).tag("result", "miss")
+                .description("Response cache misses")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME)
+                .description("Entries evicted to stay within the size bound")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, ResponseByteCache::size)
+                .tag("cache", CACHE_NAME)
+                .description("Number of cached response bodies")
+                .register(meterRegistry);
+    }
+
+    private record CachedBody(long version, byte[] body) {}
+
+    private final class Segment {
+        private final LinkedHashMap<String, CachedBody> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedBody> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized CachedBody get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, CachedBody body) {
+            entries.put(key, body);
+        }
+
+        synchronized void remove(String key) {
+            entries.remove(key);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
\ No newline at end of file
@@ -1,55 +1,141 @@
 package com.nure.cinema.movie.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.nure.cinema.movie.dto.*;
 import com.nure.cinema.movie.service.MovieService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/movies")
 @Tag(name = "Movie Service", description = "API for managing movies and sessions")
 public class MovieController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
     private final MovieService movieService;
+    private final ObjectMapper objectMapper;
+
+    // Versions restart on every boot, so ETags carry the boot epoch to stay unique
+    private final String etagEpoch = Long.toString(System.currentTimeMillis(), 36);
 
-    public MovieController(MovieService movieService) {
+    public MovieController(MovieService movieService, ObjectMapper objectMapper) {
         this.movieService = movieService;
+        this.objectMapper = objectMapper;
     }
 
     // ============ MOVIE ENDPOINTS ============
 
     @GetMapping
     @Operation(summary = "Get all movies or search by title",
-            description = "Returns list of all movies or filtered by search text")
+            description = "Returns list of all movies or filtered by search text. " +
+                    "When limit or cursor is given the catalog is paginated by id and the cursor " +
+                    "of the next page is returned in the " + NEXT_CURSOR_HEADER + " header")
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved movies")
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved movies"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit, cursor or filter")
     })
     public ResponseEntity<List<MovieDTO>> getMovies(
-            @RequestParam(required = false) String search) {
-        List<MovieDTO> movies = search != null
-                ? movieService.searchMovies(search)
-                : movieService.getAllMovies();
-        return ResponseEntity.ok(movies);
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) List<String> genre,
+            @RequestParam(required = false) Double minRating,
+            @RequestParam(required = false) String ageRestriction,
+            @RequestParam(required = false) String distributor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            WebRequest webRequest) {
+        if (isNotModified(webRequest, "movies", movieService.getMoviesVersion())) {
+            return null;
+        }
+        if (genre != null || minRating != null || ageRestriction != null || distributor != null) {
+            return ResponseEntity.ok(movieService.filterMovies(search, genre, minRating,
+                    ageRestriction, distributor).getItems());
+        }
+        if (search != null) {
+            return ResponseEntity.ok(movieService.searchMovies(search));
+        }
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(movieService.getAllMovies());
+        }
+        CursorPage<MovieDTO> page = movieService.getMoviesPage(cursor, limit != null ? limit : DEFAULT_PAGE_SIZE);
+        return pageResponse(page);
+    }
+
+    @GetMapping("/filter")
+    @Operation(summary = "Filter movies with facet counts",
+            description = "Filters movies by genre (any of), minimum rating, age restriction and distributor, " +
+                    "optionally combined with search text. Facet counts apply every filter except the facet's own")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully filtered movies"),
+            @ApiResponse(responseCode = "400", description = "Invalid filter")
+    })
+    public ResponseEntity<MovieFilterResultDTO> filterMovies(
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) List<String> genre,
+            @RequestParam(required = false) Double minRating,
+            @RequestParam(required = false) String ageRestriction,
+            @RequestParam(required = false) String distributor,
+            WebRequest webRequest) {
+        if (isNotModified(webRequest, "movies-filter", movieService.getMoviesVersion())) {
+            return null;
+        }
+        MovieFilterResultDTO result = movieService.filterMovies(search, genre, minRating,
+                ageRestriction, distributor);
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all movies",
+            description = "Streams the catalog as newline-delimited JSON, one movie per line, in id order")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Movies streamed")
+    })
+    public ResponseEntity<StreamingResponseBody> streamMovies(WebRequest webRequest) {
+        if (isNotModified(webRequest, "movies-ndjson", movieService.getMoviesVersion())) {
+            return null;
+        }
+        return ndjsonResponse(movieService.streamAllMovies());
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get movie by ID",
             description = "Returns details of a specific movie")
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Movie found"),
+            @ApiResponse(responseCode = "200", description = "Movie found",
+                    content = @Content(schema = @Schema(implementation = MovieDTO.class))),
             @ApiResponse(responseCode = "404", description = "Movie not found")
     })
-    public ResponseEntity<MovieDTO> getMovieById(@PathVariable String id) {
-        MovieDTO movie = movieService.getMovieById(id);
-        return ResponseEntity.ok(movie);
+    public ResponseEntity<?> getMovieById(@PathVariable String id, WebRequest webRequest) {
+        Long version = movieService.getMovieVersion(id).orElse(null);
+        if (version != null && isNotModified(webRequest, "movie", version)) {
+            return null;
+        }
+        if (prefersXml(webRequest)) {
+            return ResponseEntity.ok(movieService.getMovieById(id));
+        }
+        return jsonResponse(movieService.getMovieJson(id));
     }
 
     @PostMapping
@@ -95,15 +181,115 @@ public class MovieController {
 
     @GetMapping("/sessions")
     @Operation(summary = "Get all sessions",
-            description = "Returns list of all movie sessions")
+            description = "Returns list of all movie sessions. " +
+                    "When limit or cursor is given sessions are paginated by start time and the cursor " +
+                    "of the next page is returned in the " + NEXT_CURSOR_HEADER + " header")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved sessions"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit or cursor")
+    })
+    public ResponseEntity<List<SessionDTO>> getAllSessions(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            WebRequest webRequest) {
+        if (isNotModified(webRequest, "sessions", movieService.getSessionsVersion())) {
+            return null;
+        }
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(movieService.getAllSessions());
+        }
+        CursorPage<SessionDTO> page = movieService.getSessionsPage(cursor, limit != null ? limit : DEFAULT_PAGE_SIZE);
+        return pageResponse(page);
+    }
+
+    @GetMapping(value = "/sessions", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all sessions",
+            description = "Streams sessions as newline-delimited JSON, one session per line, in start time order")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Sessions streamed")
+    })
+    public ResponseEntity<StreamingResponseBody> streamSessions(WebRequest webRequest) {
+        if (isNotModified(webRequest, "sessions-ndjson", movieService.getSessionsVersion())) {
+            return null;
+        }
+        return ndjsonResponse(movieService.streamAllSessions());
+    }
+
+    @GetMapping("/sessions/range")
+    @Operation(summary = "Get sessions in a time range",
+            description = "Returns sessions starting in [from, to), ordered by start time, " +
+                    "optionally filtered by hall and movie")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved sessions"),
+            @ApiResponse(responseCode = "400", description = "Invalid time range")
+    })
+    public ResponseEntity<List<SessionDTO>> getSessionsBetween(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String hallId,
+            @RequestParam(required = false) String movieId,
+            WebRequest webRequest) {
+        if (isNotModified(webRequest, "sessions", movieService.getSessionsVersion())) {
+            return null;
+        }
+        List<SessionDTO> sessions = movieService.getSessionsBetween(from, to, hallId, movieId);
+        return ResponseEntity.ok(sessions);
+    }
+
+    @GetMapping("/sessions/upcoming")
+    @Operation(summary = "Get upcoming sessions",
+            description = "Returns sessions starting within the next N hours, " +
+                    "optionally filtered by hall and movie")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved sessions"),
+            @ApiResponse(responseCode = "400", description = "Invalid number of hours")
+    })
+    public ResponseEntity<List<SessionDTO>> getUpcomingSessions(
+            @RequestParam(defaultValue = "3") int hours,
+            @RequestParam(required = false) String hallId,
+            @RequestParam(required = false) String movieId) {
+        List<SessionDTO> sessions = movieService.getUpcomingSessions(hours, hallId, movieId);
+        return ResponseEntity.ok(sessions);
+    }
+
+    @GetMapping("/sessions/by-date")
+    @Operation(summary = "Get sessions on a date",
+            description = "Returns sessions starting on the given date, " +
+                    "optionally filtered by hall and movie")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successfully retrieved sessions")
     })
-    public ResponseEntity<List<SessionDTO>> getAllSessions() {
-        List<SessionDTO> sessions = movieService.getAllSessions();
+    public ResponseEntity<List<SessionDTO>> getSessionsOnDate(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String hallId,
+            @RequestParam(required = false) String movieId,
+            WebRequest webRequest) {
+        if (isNotModified(webRequest, "sessions", movieService.getSessionsVersion())) {
+            return null;
+        }
+        List<SessionDTO> sessions = movieService.getSessionsOnDate(date, hallId, movieId);
         return ResponseEntity.ok(sessions);
     }
 
+    @GetMapping("/halls/{hallId}/free-slots")
+    @Operation(summary = "Get free slots of a hall",
+            description = "Returns gaps between scheduled sessions of a hall on the given date")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved free slots"),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters")
+    })
+    public ResponseEntity<List<TimeSlotDTO>> getFreeSlots(
+            @PathVariable String hallId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "0") int minDurationMinutes,
+            WebRequest webRequest) {
+        if (isNotModified(webRequest, "sessions", movieService.getSessionsVersion())) {
+            return null;
+        }
+        List<TimeSlotDTO> slots = movieService.getFreeSlots(hallId, date, minDurationMinutes);
+        return ResponseEntity.ok(slots);
+    }
+
     @GetMapping("/{id}/sessions")
     @Operation(summary = "Get sessions by movie ID",
             description = "Returns all sessions for a specific movie (Sub-resource)")
@@ -111,7 +297,12 @@ public class MovieController {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved sessions"),
             @ApiResponse(responseCode = "404", description = "Movie not found")
     })
-    public ResponseEntity<List<SessionDTO>> getSessionsByMovieId(@PathVariable String id) {
+    public ResponseEntity<List<SessionDTO>> getSessionsByMovieId(@PathVariable String id, WebRequest webRequest) {
+        Long movieVersion = movieService.getMovieVersion(id).orElse(null);
+        if (movieVersion != null &&
+                isNotModified(webRequest, "movie-sessions", movieVersion, movieService.getSessionsVersion())) {
+            return null;
+        }
         List<SessionDTO> sessions = movieService.getSessionsByMovieId(id);
         return ResponseEntity.ok(sessions);
     }
@@ -120,12 +311,19 @@ public class MovieController {
     @Operation(summary = "Get session by ID",
             description = "Returns details of a specific session")
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Session found"),
+            @ApiResponse(responseCode = "200", description = "Session found",
+                    content = @Content(schema = @Schema(implementation = SessionDTO.class))),
             @ApiResponse(responseCode = "404", description = "Session not found")
     })
-    public ResponseEntity<SessionDTO> getSessionById(@PathVariable String sessionId) {
-        SessionDTO session = movieService.getSessionById(sessionId);
-        return ResponseEntity.ok(session);
+    public ResponseEntity<?> getSessionById(@PathVariable String sessionId, WebRequest webRequest) {
+        Long version = movieService.getSessionVersion(sessionId).orElse(null);
+        if (version != null && isNotModified(webRequest, "session", version)) {
+            return null;
+        }
+        if (prefersXml(webRequest)) {
+            return ResponseEntity.ok(movieService.getSessionById(sessionId));
+        }
+        return jsonResponse(movieService.getSessionJson(sessionId));
     }
 
     @PostMapping("/sessions")
@@ -134,7 +332,8 @@ public class MovieController {
     @ApiResponses({
             @ApiResponse(responseCode = "201", description = "Session created successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid request data"),
-            @ApiResponse(responseCode = "404", description = "Movie not found")
+            @ApiResponse(responseCode = "404", description = "Movie not found"),
+            @ApiResponse(responseCode = "409", description = "Hall already booked for this time")
     })
     public ResponseEntity<SessionDTO> createSession(@RequestBody CreateSessionRequest request) {
         SessionDTO createdSession = movieService.createSession(request);
@@ -147,7 +346,8 @@ public class MovieController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Session updated successfully"),
             @ApiResponse(responseCode = "404", description = "Session not found"),
-            @ApiResponse(responseCode = "400", description = "Invalid request data")
+            @ApiResponse(responseCode = "400", description = "Invalid request data"),
+            @ApiResponse(responseCode = "409", description = "Hall already booked for this time")
     })
     public ResponseEntity<SessionDTO> updateSession(
             @PathVariable String id,
@@ -167,4 +367,107 @@ public class MovieController {
         movieService.deleteSession(id);
         return ResponseEntity.noContent().build();
     }
+
+    @PostMapping("/sessions/{id}/reserve")
+    @Operation(summary = "Reserve seats",
+            description = "Atomically takes seats from the session's available seat counter")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Seats reserved"),
+            @ApiResponse(responseCode = "400", description = "Invalid seat count"),
+            @ApiResponse(responseCode = "404", description = "Session not found"),
+            @ApiResponse(responseCode = "409", description = "Not enough seats left or session cancelled")
+    })
+    public ResponseEntity<SeatInventoryDTO> reserveSeats(@PathVariable String id,
+                                                         @RequestParam(defaultValue = "1") int count) {
+        return ResponseEntity.ok(movieService.reserveSeats(id, count));
+    }
+
+    @PostMapping("/sessions/{id}/release")
+    @Operation(summary = "Release seats",
+            description = "Atomically returns seats to the session's available seat counter")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Seats released"),
+            @ApiResponse(responseCode = "400", description = "Invalid seat count"),
+            @ApiResponse(responseCode = "404", description = "Session not found"),
+            @ApiResponse(responseCode = "409", description = "Fewer seats are taken than would be released")
+    })
+    public ResponseEntity<SeatInventoryDTO> releaseSeats(@PathVariable String id,
+                                                         @RequestParam(defaultValue = "1") int count) {
+        return ResponseEntity.ok(movieService.releaseSeats(id, count));
+    }
+
+    @PostMapping("/sessions/reserve")
+    @Operation(summary = "Reserve seats in several sessions",
+            description = "Reserves seats in every listed session, or in none of them")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "All seats reserved"),
+            @ApiResponse(responseCode = "400", description = "Invalid request data"),
+            @ApiResponse(responseCode = "404", description = "Session not found"),
+            @ApiResponse(responseCode = "409", description = "Not enough seats in one of the sessions")
+    })
+    public ResponseEntity<List<SeatInventoryDTO>> reserveSeatsBatch(@RequestBody List<SeatReservationRequest> requests) {
+        return ResponseEntity.ok(movieService.reserveSeats(requests));
+    }
+
+    /**
+     * Answers If-None-Match from version counters alone: on a match the response becomes
+     * 304 before any DTO is built or serialized; otherwise the strong ETag is set on the response.
+     */
+    private boolean isNotModified(WebRequest webRequest, String scope, long... versions) {
+        StringBuilder etag = new StringBuilder("\"").append(etagEpoch).append('-').append(scope);
+        for (long version : versions) {
+            etag.append('-').append(version);
+        }
+        // The same URL may be rendered as JSON or XML; a strong ETag must differ between them
+        if (prefersXml(webRequest)) {
+            etag.append("-xml");
+        }
+        etag.append('"');
+        return webRequest.checkNotModified(etag.toString());
+    }
+
+    private boolean prefersXml(WebRequest webRequest) {
+        String accept = webRequest.getHeader(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains("xml") && !accept.contains("json");
+    }
+
+    /**
+     * Writes pre-serialized JSON straight to the response, bypassing the message converters' Jackson pass.
+     */
+    private ResponseEntity<byte[]> jsonResponse(byte[] body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private <T> ResponseEntity<List<T>> pageResponse(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    private ResponseEntity<StreamingResponseBody> ndjsonResponse(Stream<?> items) {
+        StreamingResponseBody body = out -> {
+            try (items; SequenceWriter writer = objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("\n")
+                    .writeValues(out)) {
+                Iterator<?> iterator = items.iterator();
+                boolean written = false;
+                while (iterator.hasNext()) {
+                    writer.write(iterator.next());
+                    written = true;
+                }
+                writer.flush();
+                if (written) {
+                    out.write('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 }
\ No newline at end of file
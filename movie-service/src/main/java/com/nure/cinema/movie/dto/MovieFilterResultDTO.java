@@ -0,0 +1,24 @@
+package com.nure.cinema.movie.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filtered movies together with facet counts (e.g. genre -> {"Drama": 1204}). Each facet is counted
+ * with all filters applied except its own, so selecting a genre still shows the other genres' counts.
+ */
+public class MovieFilterResultDTO {
+    private int total;
+    private List<MovieDTO> items;
+    private Map<String, Map<String, Integer>> facets;
+
+    // Getters and Setters
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+
+    public List<MovieDTO> getItems() { return items; }
+    public void setItems(List<MovieDTO> items) { this.items = items; }
+
+    public Map<String, Map<String, Integer>> getFacets() { return facets; }
+    public void setFacets(Map<String, Map<String, Integer>> facets) { this.facets = facets; }
+}
\ No newline at end of file
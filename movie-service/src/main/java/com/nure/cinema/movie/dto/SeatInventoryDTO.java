@@ -0,0 +1,25 @@
+package com.nure.cinema.movie.dto;
+
+public class SeatInventoryDTO {
+    private String sessionId;
+    private int changedBy;
+    private int availableSeats;
+
+    public SeatInventoryDTO() {}
+
+    public SeatInventoryDTO(String sessionId, int changedBy, int availableSeats) {
+        this.sessionId = sessionId;
+        this.changedBy = changedBy;
+        this.availableSeats = availableSeats;
+    }
+
+    // Getters and Setters
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public int getChangedBy() { return changedBy; }
+    public void setChangedBy(int changedBy) { this.changedBy = changedBy; }
+
+    public int getAvailableSeats() { return availableSeats; }
+    public void setAvailableSeats(int availableSeats) { this.availableSeats = availableSeats; }
+}
@@ -0,0 +1,20 @@
+package com.nure.cinema.movie.dto;
+
+public class SeatReservationRequest {
+    private String sessionId;
+    private int count;
+
+    public SeatReservationRequest() {}
+
+    public SeatReservationRequest(String sessionId, int count) {
+        this.sessionId = sessionId;
+        this.count = count;
+    }
+
+    // Getters and Setters
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+}
@@ -0,0 +1,27 @@
+package com.nure.cinema.movie.dto;
+
+import java.time.LocalDateTime;
+
+public class TimeSlotDTO {
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private long durationMinutes;
+
+    public TimeSlotDTO() {}
+
+    public TimeSlotDTO(LocalDateTime startTime, LocalDateTime endTime, long durationMinutes) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.durationMinutes = durationMinutes;
+    }
+
+    // Getters and Setters
+    public LocalDateTime getStartTime() { return startTime; }
+    public void setStartTime(LocalDateTime startTime) { this.startTime = startTime; }
+
+    public LocalDateTime getEndTime() { return endTime; }
+    public void setEndTime(LocalDateTime endTime) { this.endTime = endTime; }
+
+    public long getDurationMinutes() { return durationMinutes; }
+    public void setDurationMinutes(long durationMinutes) { this.durationMinutes = durationMinutes; }
+}
\ No newline at end of file
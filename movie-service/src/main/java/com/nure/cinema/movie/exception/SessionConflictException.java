@@ -0,0 +1,7 @@
+package com.nure.cinema.movie.exception;
+
+public class SessionConflictException extends RuntimeException {
+    public SessionConflictException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
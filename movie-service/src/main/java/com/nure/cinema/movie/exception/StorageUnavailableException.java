@@ -0,0 +1,7 @@
+package com.nure.cinema.movie.exception;
+
+public class StorageUnavailableException extends RuntimeException {
+    public StorageUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,6 +1,7 @@
 package com.nure.cinema.movie.model;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Session {
     private String id;
@@ -9,7 +10,11 @@ public class Session {
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private Price price;
-    private int availableSeats;
+    // Changed concurrently by seat reservations, see tryReserveSeats/releaseSeats
+    private final AtomicInteger availableSeats = new AtomicInteger();
+    // Seats the session was created with; releases never raise availableSeats above it.
+    // Integer.MAX_VALUE for sessions journaled before it was recorded.
+    private int totalSeats = Integer.MAX_VALUE;
     private String status;
 
     public Session() {}
@@ -22,7 +27,8 @@ public class Session {
         this.startTime = startTime;
         this.endTime = endTime;
         this.price = price;
-        this.availableSeats = availableSeats;
+        this.availableSeats.set(availableSeats);
+        this.totalSeats = availableSeats;
         this.status = status;
     }
 
@@ -45,8 +51,46 @@ public class Session {
     public Price getPrice() { return price; }
     public void setPrice(Price price) { this.price = price; }
 
-    public int getAvailableSeats() { return availableSeats; }
-    public void setAvailableSeats(int availableSeats) { this.availableSeats = availableSeats; }
+    public int getAvailableSeats() { return availableSeats.get(); }
+    public void setAvailableSeats(int availableSeats) { this.availableSeats.set(availableSeats); }
+
+    public int getTotalSeats() { return totalSeats; }
+    public void setTotalSeats(int totalSeats) { this.totalSeats = totalSeats; }
+
+    /**
+     * Takes {@code count} seats with compare-and-set; fails without waiting if fewer are left.
+     *
+     * @return seats left after the reservation, or -1 if there were not enough
+     */
+    public int tryReserveSeats(int count) {
+        while (true) {
+            int current = availableSeats.get();
+            if (current < count) {
+                return -1;
+            }
+            if (availableSeats.compareAndSet(current, current - count)) {
+                return current - count;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code count} seats with compare-and-set; fails if that would make more seats
+     * available than the session has.
+     *
+     * @return seats left after the release, or -1 if fewer than {@code count} seats were taken
+     */
+    public int releaseSeats(int count) {
+        while (true) {
+            int current = availableSeats.get();
+            if (count > totalSeats - current) {
+                return -1;
+            }
+            if (availableSeats.compareAndSet(current, current + count)) {
+                return current + count;
+            }
+        }
+    }
 
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
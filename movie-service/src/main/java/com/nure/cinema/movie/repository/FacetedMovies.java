@@ -0,0 +1,12 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.model.Movie;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Movies matching a facet filter, with per-facet value counts. Each facet is counted over the
+ * movies matching all filters except its own.
+ */
+public record FacetedMovies(List<Movie> movies, Map<String, Map<String, Integer>> facetCounts) {}
\ No newline at end of file
@@ -0,0 +1,293 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.model.Movie;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmap index over movie facets: genre, age restriction, distributor and rating.
+ *
+ * Movies are assigned dense ordinals (reused after delete) so each facet value is a compact
+ * {@link BitSet}. Filters are answered by intersecting bitmaps and facet counts by the
+ * cardinality of those intersections; {@link Movie} objects are never visited. Counts are
+ * disjunctive: each facet is counted with every filter except its own, so the other values of
+ * a filtered facet keep their counts and can be added to the selection. Ratings are
+ * bucketed by 0.1, and only the boundary bucket of a {@code minRating} filter is checked
+ * against the exact ratings array.
+ */
+class MovieFacetIndex {
+
+    static final String GENRE = "genre";
+    static final String AGE_RESTRICTION = "ageRestriction";
+    static final String DISTRIBUTOR = "distributor";
+
+    private static final int RATING_BUCKETS = 101;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> idsByOrdinal = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private double[] ratings = new double[64];
+
+    private final Map<String, FacetValue> genres = new HashMap<>();
+    private final Map<String, FacetValue> ageRestrictions = new HashMap<>();
+    private final Map<String, FacetValue> distributors = new HashMap<>();
+    private final BitSet[] ratingBuckets = new BitSet[RATING_BUCKETS];
+
+    private final Map<String, IndexedFacets> indexedFacets = new HashMap<>();
+
+    MovieFacetIndex() {
+        for (int i = 0; i < RATING_BUCKETS; i++) {
+            ratingBuckets[i] = new BitSet();
+        }
+    }
+
+    void index(Movie movie) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(movie.getId());
+
+            int ordinal = allocateOrdinal(movie.getId());
+            live.set(ordinal);
+
+            List<String> genreKeys = new ArrayList<>();
+            if (movie.getGenres() != null) {
+                for (String genre : movie.getGenres()) {
+                    if (genre != null && !genre.isBlank()) {
+                        genreKeys.add(addToFacet(genres, genre, ordinal));
+                    }
+                }
+            }
+            String ageKey = movie.getAgeRestriction() != null
+                    ? addToFacet(ageRestrictions, movie.getAgeRestriction(), ordinal) : null;
+            String distributorKey = movie.getDistributor() != null
+                    ? addToFacet(distributors, movie.getDistributor(), ordinal) : null;
+
+            int bucket = ratingBucket(movie.getRating());
+            ratingBuckets[bucket].set(ordinal);
+            if (ordinal >= ratings.length) {
+                ratings = Arrays.copyOf(ratings, Math.max(ordinal + 1, ratings.length * 2));
+            }
+            ratings[ordinal] = movie.getRating();
+
+            indexedFacets.put(movie.getId(), new IndexedFacets(ordinal, genreKeys, ageKey, distributorKey, bucket));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String movieId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(movieId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Matches movies against the given facet filters (null or empty means "any").
+     *
+     * @param candidateIds when non-null, restricts the result to these ids and keeps their order
+     * @return matching ids and, per facet, the count of movies matching all other filters for
+     * each facet value
+     */
+    Result query(Collection<String> genreFilter, Double minRating, String ageRestriction,
+                 String distributor, List<String> candidateIds) {
+        lock.readLock().lock();
+        try {
+            // filters that are not facets narrow every count
+            BitSet base = (BitSet) live.clone();
+            if (candidateIds != null) {
+                BitSet candidates = new BitSet();
+                for (String id : candidateIds) {
+                    Integer ordinal = ordinals.get(id);
+                    if (ordinal != null) {
+                        candidates.set(ordinal);
+                    }
+                }
+                base.and(candidates);
+            }
+            if (minRating != null) {
+                base.and(ratingAtLeast(minRating));
+            }
+
+            // null means the facet is not filtered
+            BitSet genreMatch = null;
+            if (genreFilter != null && !genreFilter.isEmpty()) {
+                genreMatch = new BitSet();
+                for (String genre : genreFilter) {
+                    FacetValue value = genres.get(key(genre));
+                    if (value != null) {
+                        genreMatch.or(value.movies);
+                    }
+                }
+            }
+            BitSet ageMatch = ageRestriction != null ? bitmapOf(ageRestrictions, ageRestriction) : null;
+            BitSet distributorMatch = distributor != null ? bitmapOf(distributors, distributor) : null;
+
+            BitSet result = intersect(base, genreMatch, ageMatch, distributorMatch);
+
+            List<String> ids = new ArrayList<>(result.cardinality());
+            if (candidateIds != null) {
+                for (String id : candidateIds) {
+                    Integer ordinal = ordinals.get(id);
+                    if (ordinal != null && result.get(ordinal)) {
+                        ids.add(id);
+                    }
+                }
+            } else {
+                for (int ordinal = result.nextSetBit(0); ordinal >= 0; ordinal = result.nextSetBit(ordinal + 1)) {
+                    ids.add(idsByOrdinal.get(ordinal));
+                }
+                ids.sort(null);
+            }
+
+            Map<String, Map<String, Integer>> facetCounts = new LinkedHashMap<>();
+            facetCounts.put(GENRE, countFacet(genres, intersect(base, ageMatch, distributorMatch)));
+            facetCounts.put(AGE_RESTRICTION, countFacet(ageRestrictions, intersect(base, genreMatch, distributorMatch)));
+            facetCounts.put(DISTRIBUTOR, countFacet(distributors, intersect(base, genreMatch, ageMatch)));
+            return new Result(ids, facetCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(String movieId) {
+        IndexedFacets previous = indexedFacets.remove(movieId);
+        if (previous == null) {
+            return;
+        }
+        int ordinal = previous.ordinal();
+        for (String genreKey : previous.genreKeys()) {
+            removeFromFacet(genres, genreKey, ordinal);
+        }
+        if (previous.ageKey() != null) {
+            removeFromFacet(ageRestrictions, previous.ageKey(), ordinal);
+        }
+        if (previous.distributorKey() != null) {
+            removeFromFacet(distributors, previous.distributorKey(), ordinal);
+        }
+        ratingBuckets[previous.ratingBucket()].clear(ordinal);
+        live.clear(ordinal);
+        ordinals.remove(movieId);
+        idsByOrdinal.set(ordinal, null);
+        freeOrdinals.push(ordinal);
+    }
+
+    private int allocateOrdinal(String movieId) {
+        int ordinal;
+        if (freeOrdinals.isEmpty()) {
+            ordinal = idsByOrdinal.size();
+            idsByOrdinal.add(movieId);
+        } else {
+            ordinal = freeOrdinals.pop();
+            idsByOrdinal.set(ordinal, movieId);
+        }
+        ordinals.put(movieId, ordinal);
+        return ordinal;
+    }
+
+    private BitSet ratingAtLeast(double minRating) {
+        BitSet matching = new BitSet();
+        int boundary = ratingBucket(minRating);
+        for (int bucket = boundary + 1; bucket < RATING_BUCKETS; bucket++) {
+            matching.or(ratingBuckets[bucket]);
+        }
+        BitSet boundaryBucket = ratingBuckets[boundary];
+        for (int ordinal = boundaryBucket.nextSetBit(0); ordinal >= 0; ordinal = boundaryBucket.nextSetBit(ordinal + 1)) {
+            if (ratings[ordinal] >= minRating) {
+                matching.set(ordinal);
+            }
+        }
+        return matching;
+    }
+
+    private static int ratingBucket(double rating) {
+        int bucket = (int) Math.floor(rating * 10);
+        return Math.max(0, Math.min(RATING_BUCKETS - 1, bucket));
+    }
+
+    private static String addToFacet(Map<String, FacetValue> facet, String label, int ordinal) {
+        String key = key(label);
+        facet.computeIfAbsent(key, k -> new FacetValue(label)).movies.set(ordinal);
+        return key;
+    }
+
+    private static void removeFromFacet(Map<String, FacetValue> facet, String key, int ordinal) {
+        FacetValue value = facet.get(key);
+        if (value != null) {
+            value.movies.clear(ordinal);
+            if (value.movies.isEmpty()) {
+                facet.remove(key);
+            }
+        }
+    }
+
+    private static BitSet intersect(BitSet base, BitSet... filters) {
+        BitSet result = (BitSet) base.clone();
+        for (BitSet filter : filters) {
+            if (filter != null) {
+                result.and(filter);
+            }
+        }
+        return result;
+    }
+
+    private static BitSet bitmapOf(Map<String, FacetValue> facet, String label) {
+        FacetValue value = facet.get(key(label));
+        return value != null ? value.movies : new BitSet();
+    }
+
+    private static Map<String, Integer> countFacet(Map<String, FacetValue> facet, BitSet result) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        for (FacetValue value : facet.values()) {
+            BitSet intersection = (BitSet) value.movies.clone();
+            intersection.and(result);
+            int count = intersection.cardinality();
+            if (count > 0) {
+                entries.add(Map.entry(value.label, count));
+            }
+        }
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            counts.put(entry.getKey(), entry.getValue());
+        }
+        return counts;
+    }
+
+    private static String key(String label) {
+        return label.trim().toLowerCase(Locale.ROOT);
+    }
+
+    record Result(List<String> movieIds, Map<String, Map<String, Integer>> facetCounts) {}
+
+    private record IndexedFacets(int ordinal, List<String> genreKeys, String ageKey,
+                                 String distributorKey, int ratingBucket) {}
+
+    private static final class FacetValue {
+        private final String label;
+        private final BitSet movies = new BitSet();
+
+        FacetValue(String label) {
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,605 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.exception.StorageUnavailableException;
+import com.nure.cinema.movie.model.Movie;
+import com.nure.cinema.movie.model.Session;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Local persistence for {@link MovieRepository}: an append-only write-ahead log plus periodic
+ * binary snapshots.
+ *
+ * Mutations are encoded and sequenced by {@code append*} (called under the repository write
+ * locks, so log order matches apply order) and handed to a single writer thread. The writer
+ * drains everything queued since its last write, writes it in one call and fsyncs once for the
+ * whole batch (group commit); callers wait for that fsync outside the repository locks.
+ *
+ * Every {@code snapshot-every-records} records (or {@code snapshot-interval-seconds}) the full
+ * state is written to a new snapshot file and log segments fully covered by it are deleted.
+ * Startup memory-maps the newest valid snapshot and replays only log records after it.
+ *
+ * Changes are applied in memory before they are logged, so a failed write leaves memory ahead
+ * of the disk. The journal then fails stop: the failed batch and everything queued behind it
+ * complete exceptionally, every later write is rejected, no snapshot is taken (it would persist
+ * the unlogged changes) and health reports DOWN until a restart reloads the durable state.
+ * Appends after the writer has stopped for any other reason are rejected as well, so
+ * {@link #awaitDurable} never waits for a writer that is gone.
+ */
+@Component
+public class MovieJournal implements HealthIndicator {
+
+    /**
+     * Receives recovered state during {@link #recover}.
+     */
+    public interface Replay {
+        void putMovie(Movie movie);
+
+        void deleteMovie(String id);
+
+        void putSession(Session session);
+
+        void deleteSession(String id);
+    }
+
+    /**
+     * Point-in-time copy of the repository: contains the effect of every record up to {@code sequence}.
+     */
+    public record State(long sequence, Collection<Movie> movies, Collection<Session> sessions) {}
+
+    private static final byte PUT_MOVIE = 1;
+    private static final byte DELETE_MOVIE = 2;
+    // sessions without totalSeats, only read
+    private static final byte PUT_SESSION_V1 = 3;
+    private static final byte DELETE_SESSION = 4;
+    private static final byte PUT_SESSION = 5;
+
+    private static final int SNAPSHOT_MAGIC = 0x4D4F5653;
+    // format 1 has sessions without totalSeats
+    private static final int SNAPSHOT_FORMAT = 2;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    // length + crc in front of every record
+    private static final int FRAME_HEADER = 8;
+
+    private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int maxBatchRecords;
+    private final long snapshotEveryRecords;
+    private final long snapshotIntervalSeconds;
+
+    private final Object appendLock = new Object();
+    private long lastSequence;
+    // set by the writer when it exits; no record is queued afterwards (guarded by appendLock)
+    private boolean writerStopped;
+    private volatile Throwable failure;
+    private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+
+    private Thread writer;
+    private volatile boolean running;
+    private volatile boolean rollRequested;
+    private FileChannel segment;
+
+    private ScheduledExecutorService snapshotExecutor;
+    private Supplier<State> stateSource;
+    private final AtomicLong recordsSinceSnapshot = new AtomicLong();
+    private final AtomicBoolean snapshotInProgress = new AtomicBoolean();
+
+    public MovieJournal(@Value("${movie.storage.enabled:true}") boolean enabled,
+                        @Value("${movie.storage.dir:data/movie-service}") String directory,
+                        @Value("${movie.storage.max-batch-records:4096}") int maxBatchRecords,
+                        @Value("${movie.storage.snapshot-every-records:100000}") long snapshotEveryRecords,
+                        @Value("${movie.storage.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.maxBatchRecords = maxBatchRecords;
+        this.snapshotEveryRecords = snapshotEveryRecords;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    /**
+     * Loads the newest snapshot and replays the log tail into {@code target}.
+     *
+     * @return true if any persisted state was found
+     */
+    public boolean recover(Replay target) {
+        if (!enabled) {
+            return false;
+        }
+        long started = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            long snapshotSequence = loadSnapshot(target);
+            long replayed = 0;
+            long sequence = snapshotSequence;
+            for (Path path : listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                long[] result = replaySegment(path, snapshotSequence, target);
+                replayed += result[0];
+                sequence = Math.max(sequence, result[1]);
+            }
+            synchronized (appendLock) {
+                lastSequence = sequence;
+            }
+            recordsSinceSnapshot.set(replayed);
+
+            System.out.println("[JOURNAL] Recovered up to record " + sequence + " (snapshot " +
+                    snapshotSequence + ", " + replayed + " log records) in " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+            return sequence > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover movie storage from " + directory, e);
+        }
+    }
+
+    /**
+     * Starts the writer and snapshot threads. {@code stateSource} must return a consistent copy
+     * of the repository together with {@link #lastSequence()} read while that copy was taken.
+     */
+    public void start(Supplier<State> stateSource) {
+        if (!enabled) {
+            return;
+        }
+        this.stateSource = stateSource;
+        // The writer requests snapshots, so the executor must exist before the writer runs
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "movie-journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.scheduleWithFixedDelay(() -> {
+            if (recordsSinceSnapshot.get() > 0) {
+                snapshot();
+            }
+        }, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        if (recordsSinceSnapshot.get() >= snapshotEveryRecords) {
+            snapshotExecutor.execute(this::snapshot);
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "movie-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public CompletableFuture<Void> appendMovie(Movie movie) {
+        return append(PUT_MOVIE, out -> MovieRecordCodec.writeMovie(out, movie));
+    }
+
+    public CompletableFuture<Void> appendMovieDelete(String id) {
+        return append(DELETE_MOVIE, out -> MovieRecordCodec.writeString(out, id));
+    }
+
+    public CompletableFuture<Void> appendSession(Session session) {
+        return append(PUT_SESSION, out -> MovieRecordCodec.writeSession(out, session));
+    }
+
+    public CompletableFuture<Void> appendSessionDelete(String id) {
+        return append(DELETE_SESSION, out -> MovieRecordCodec.writeString(out, id));
+    }
+
+    /**
+     * Blocks until the record behind {@code durable} has been fsynced, or the writer failed or
+     * stopped before writing it.
+     */
+    public void awaitDurable(CompletableFuture<Void> durable) {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw new StorageUnavailableException("Failed to persist change: " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Rejects a write up front once the journal has failed, before it is applied in memory.
+     */
+    public void checkWritable() {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new StorageUnavailableException("Movie storage failed, changes are rejected until restart: " +
+                    cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public Health health() {
+        Throwable cause = failure;
+        if (cause != null) {
+            return Health.down().withDetail("journal", "write failed: " + cause.getMessage()).build();
+        }
+        return Health.up().withDetail("journal", enabled ? "lastSequence " + lastSequence() : "disabled").build();
+    }
+
+    public long lastSequence() {
+        synchronized (appendLock) {
+            return lastSequence;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotExecutor.shutdown();
+        if (recordsSinceSnapshot.get() > 0 && failure == null) {
+            snapshot();
+        }
+        closeSegment();
+    }
+
+    private CompletableFuture<Void> append(byte type, RecordWriter payload) {
+        if (!enabled) {
+            return DURABLE;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        try {
+            synchronized (appendLock) {
+                if (writerStopped) {
+                    durable.completeExceptionally(stopReason());
+                    return durable;
+                }
+                long sequence = lastSequence + 1;
+                out.writeLong(sequence);
+                out.writeByte(type);
+                payload.write(out);
+                lastSequence = sequence;
+                queue.add(new PendingRecord(sequence, bytes.toByteArray(), durable));
+            }
+        } catch (IOException e) {
+            durable.completeExceptionally(e);
+        }
+        return durable;
+    }
+
+    private void writeLoop() {
+        List<PendingRecord> batch = new ArrayList<>();
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    PendingRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchRecords - 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                try {
+                    writeBatch(batch);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("[JOURNAL] Write failed, rejecting all further changes: " + e.getMessage());
+                    failure = e;
+                    closeSegment();
+                    return;
+                }
+                for (PendingRecord record : batch) {
+                    record.durable().complete(null);
+                }
+                int written = batch.size();
+                batch.clear();
+
+                if (recordsSinceSnapshot.addAndGet(written) >= snapshotEveryRecords &&
+                        !snapshotInProgress.get()) {
+                    try {
+                        snapshotExecutor.execute(this::snapshot);
+                    } catch (RejectedExecutionException e) {
+                        // closing: close() takes the final snapshot
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // fail like a write error, so health() and checkWritable() see that the writer is gone
+            System.out.println("[JOURNAL] Writer failed, rejecting all further changes: " + e.getMessage());
+            failure = e;
+            closeSegment();
+        } finally {
+            stopWriter(batch);
+        }
+    }
+
+    // Fails the records the writer took but did not write, and everything still queued
+    private void stopWriter(List<PendingRecord> unwritten) {
+        synchronized (appendLock) {
+            writerStopped = true;
+            queue.drainTo(unwritten);
+        }
+        Throwable reason = stopReason();
+        for (PendingRecord record : unwritten) {
+            record.durable().completeExceptionally(reason);
+        }
+    }
+
+    private Throwable stopReason() {
+        Throwable cause = failure;
+        return cause != null ? cause : new IllegalStateException("Movie journal writer has stopped");
+    }
+
+    private void writeBatch(List<PendingRecord> batch) throws IOException {
+        if (rollRequested) {
+            rollRequested = false;
+            closeSegment();
+        }
+        if (segment == null) {
+            Path path = directory.resolve(segmentName(batch.get(0).sequence()));
+            segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+
+        int size = 0;
+        for (PendingRecord record : batch) {
+            size += FRAME_HEADER + record.body().length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (PendingRecord record : batch) {
+            crc.reset();
+            crc.update(record.body());
+            buffer.putInt(record.body().length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(record.body());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segment.force(false);
+    }
+
+    private void closeSegment() {
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                System.out.println("[JOURNAL] Failed to close segment: " + e.getMessage());
+            }
+            segment = null;
+        }
+    }
+
+    private void snapshot() {
+        if (failure != null || !snapshotInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            // Records appended from here on go to a fresh segment, so older segments end up
+            // fully covered by the snapshot and can be deleted.
+            rollRequested = true;
+            State state = stateSource.get();
+            recordsSinceSnapshot.set(0);
+
+            Path target = directory.resolve(snapshotName(state.sequence()));
+            Path temp = directory.resolve(target.getFileName() + ".tmp");
+            writeSnapshot(temp, state);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();
+            deleteObsoleteFiles(state.sequence());
+
+            System.out.println("[JOURNAL] Snapshot at record " + state.sequence() + " (" +
+                    state.movies().size() + " movies, " + state.sessions().size() + " sessions) in " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[JOURNAL] Snapshot failed: " + e.getMessage());
+        } finally {
+            snapshotInProgress.set(false);
+        }
+    }
+
+    private void writeSnapshot(Path path, State state) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(path.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_FORMAT);
+            out.writeLong(state.sequence());
+            out.writeInt(state.movies().size());
+            for (Movie movie : state.movies()) {
+                MovieRecordCodec.writeMovie(out, movie);
+            }
+            out.writeInt(state.sessions().size());
+            for (Session session : state.sessions()) {
+                MovieRecordCodec.writeSession(out, session);
+            }
+            out.flush();
+            // trailing checksum of everything above, written past the checksumming stream
+            new DataOutputStream(file).writeInt((int) checked.getChecksum().getValue());
+            file.getChannel().force(true);
+        }
+    }
+
+    /**
+     * @return sequence of the loaded snapshot, or 0 if there is none
+     */
+    private long loadSnapshot(Replay target) throws IOException {
+        List<Path> snapshots = listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (!isValidSnapshot(buffer)) {
+                    System.out.println("[JOURNAL] Skipping corrupt snapshot " + path.getFileName());
+                    continue;
+                }
+                boolean withTotalSeats = buffer.getInt(4) >= 2;
+                buffer.position(8);
+                long sequence = buffer.getLong();
+                int movieCount = buffer.getInt();
+                for (int m = 0; m < movieCount; m++) {
+                    target.putMovie(MovieRecordCodec.readMovie(buffer));
+                }
+                int sessionCount = buffer.getInt();
+                for (int s = 0; s < sessionCount; s++) {
+                    target.putSession(MovieRecordCodec.readSession(buffer, withTotalSeats));
+                }
+                return sequence;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isValidSnapshot(ByteBuffer buffer) {
+        int size = buffer.limit();
+        if (size < 24 || buffer.getInt(0) != SNAPSHOT_MAGIC ||
+                buffer.getInt(4) < 1 || buffer.getInt(4) > SNAPSHOT_FORMAT) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, size - 4));
+        return (int) crc.getValue() == buffer.getInt(size - 4);
+    }
+
+    /**
+     * Applies records after {@code afterSequence}. Stops at the first torn or corrupt record:
+     * it and anything after it in the segment were never acknowledged as durable.
+     *
+     * @return {replayed record count, highest sequence seen}
+     */
+    private long[] replaySegment(Path path, long afterSequence, Replay target) throws IOException {
+        long replayed = 0;
+        long highest = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= FRAME_HEADER) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 9 || length > buffer.remaining()) {
+                    System.out.println("[JOURNAL] Torn record at " + path.getFileName() + ":" + start);
+                    break;
+                }
+                ByteBuffer body = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    System.out.println("[JOURNAL] Corrupt record at " + path.getFileName() + ":" + start);
+                    break;
+                }
+                buffer.position(buffer.position() + length);
+
+                long sequence = body.getLong();
+                byte type = body.get();
+                highest = Math.max(highest, sequence);
+                if (sequence <= afterSequence) {
+                    continue;
+                }
+                switch (type) {
+                    case PUT_MOVIE -> target.putMovie(MovieRecordCodec.readMovie(body));
+                    case DELETE_MOVIE -> target.deleteMovie(MovieRecordCodec.readString(body));
+                    case PUT_SESSION_V1 -> target.putSession(MovieRecordCodec.readSession(body, false));
+                    case PUT_SESSION -> target.putSession(MovieRecordCodec.readSession(body, true));
+                    case DELETE_SESSION -> target.deleteSession(MovieRecordCodec.readString(body));
+                    default -> throw new IOException("Unknown record type " + type + " in " + path);
+                }
+                replayed++;
+            }
+        }
+        return new long[] {replayed, highest};
+    }
+
+    private void deleteObsoleteFiles(long snapshotSequence) throws IOException {
+        List<Path> segments = listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            // a segment ends right before the next one starts
+            if (startSequence(segments.get(i + 1), SEGMENT_PREFIX, SEGMENT_SUFFIX) <= snapshotSequence + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+        for (Path snapshot : listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (startSequence(snapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < snapshotSequence) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // not supported on every platform; the rename is still atomic
+        }
+    }
+
+    private List<Path> listFiles(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long startSequence(Path path, String prefix, String suffix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    // zero-padded so lexicographic order is sequence order
+    private static String segmentName(long firstSequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+    }
+
+    private static String snapshotName(long sequence) {
+        return String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private record PendingRecord(long sequence, byte[] body, CompletableFuture<Void> durable) {}
+}
@@ -0,0 +1,143 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.model.Movie;
+import com.nure.cinema.movie.model.Session;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of movies and sessions shared by the journal and its snapshots.
+ *
+ * Strings are length-prefixed UTF-8 (length -1 for null), times are epoch seconds plus nanos.
+ * Writing goes through {@link DataOutput}; reading works on a {@link ByteBuffer} so snapshots
+ * can be decoded straight from a memory-mapped file.
+ */
+final class MovieRecordCodec {
+
+    private MovieRecordCodec() {
+    }
+
+    static void writeMovie(DataOutput out, Movie movie) throws IOException {
+        writeString(out, movie.getId());
+        writeString(out, movie.getTitle());
+        writeString(out, movie.getDescription());
+        out.writeInt(movie.getDurationMinutes());
+        List<String> genres = movie.getGenres();
+        if (genres == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(genres.size());
+            for (String genre : genres) {
+                writeString(out, genre);
+            }
+        }
+        out.writeDouble(movie.getRating());
+        writeString(out, movie.getAgeRestriction());
+        writeString(out, movie.getDistributor());
+        writeString(out, movie.getReleaseDate());
+    }
+
+    static Movie readMovie(ByteBuffer in) {
+        Movie movie = new Movie();
+        movie.setId(readString(in));
+        movie.setTitle(readString(in));
+        movie.setDescription(readString(in));
+        movie.setDurationMinutes(in.getInt());
+        int genreCount = in.getInt();
+        if (genreCount >= 0) {
+            List<String> genres = new ArrayList<>(genreCount);
+            for (int i = 0; i < genreCount; i++) {
+                genres.add(readString(in));
+            }
+            movie.setGenres(genres);
+        }
+        movie.setRating(in.getDouble());
+        movie.setAgeRestriction(readString(in));
+        movie.setDistributor(readString(in));
+        movie.setReleaseDate(readString(in));
+        return movie;
+    }
+
+    static void writeSession(DataOutput out, Session session) throws IOException {
+        writeString(out, session.getId());
+        writeString(out, session.getMovieId());
+        writeString(out, session.getHallId());
+        writeTime(out, session.getStartTime());
+        writeTime(out, session.getEndTime());
+        Session.Price price = session.getPrice();
+        out.writeBoolean(price != null);
+        if (price != null) {
+            out.writeDouble(price.getValue());
+            writeString(out, price.getCurrency());
+        }
+        out.writeInt(session.getAvailableSeats());
+        writeString(out, session.getStatus());
+        out.writeInt(session.getTotalSeats());
+    }
+
+    /**
+     * @param withTotalSeats false for records written before the session capacity was stored
+     */
+    static Session readSession(ByteBuffer in, boolean withTotalSeats) {
+        Session session = new Session();
+        session.setId(readString(in));
+        session.setMovieId(readString(in));
+        session.setHallId(readString(in));
+        session.setStartTime(readTime(in));
+        session.setEndTime(readTime(in));
+        if (in.get() != 0) {
+            double value = in.getDouble();
+            session.setPrice(new Session.Price(value, readString(in)));
+        }
+        session.setAvailableSeats(in.getInt());
+        session.setStatus(readString(in));
+        if (withTotalSeats) {
+            session.setTotalSeats(in.getInt());
+        }
+        return session;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutput out, LocalDateTime time) throws IOException {
+        out.writeBoolean(time != null);
+        if (time != null) {
+            out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(time.getNano());
+        }
+    }
+
+    private static LocalDateTime readTime(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        long epochSecond = in.getLong();
+        int nano = in.getInt();
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+}
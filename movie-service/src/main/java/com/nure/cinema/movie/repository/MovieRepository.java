@@ -8,22 +8,71 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 @Repository
 public class MovieRepository {
 
-    private final List<Movie> movies = new ArrayList<>();
-    private final List<Session> sessions = new ArrayList<>();
+    private final Map<String, Movie> movies = new ConcurrentHashMap<>();
+    // Movies ordered by id, for keyset pagination and streaming
+    private final ConcurrentSkipListMap<String, Movie> moviesInIdOrder = new ConcurrentSkipListMap<>();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
 
-    public MovieRepository() {
-        initializeData();
+    // Secondary indexes: movieId -> sessionIds, hallId -> sessionIds
+    private final Map<String, Set<String>> sessionsByMovie = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByHall = new ConcurrentHashMap<>();
+
+    // Sessions ordered by (startTime, id) for time-window queries
+    private final ConcurrentSkipListMap<SessionTimeKey, Session> sessionsByStartTime = new ConcurrentSkipListMap<>();
+
+    // Per-hall schedule of non-cancelled sessions ordered by start time. Sessions in one hall
+    // never overlap, so end times are ordered too and overlap lookups are O(log n).
+    private final Map<String, ConcurrentSkipListMap<SessionTimeKey, SessionKeys>> hallSchedules =
+            new ConcurrentHashMap<>();
+
+    private final MovieSearchIndex searchIndex = new MovieSearchIndex();
+    private final MovieFacetIndex facetIndex = new MovieFacetIndex();
+
+    // Index keys each session was last indexed under. Sessions are mutated in place
+    // before saveSession, so the old keys cannot be read back from the entity itself.
+    private final Map<String, SessionKeys> indexedSessionKeys = new ConcurrentHashMap<>();
+
+    // Monotonic version clock shared by movies and sessions. Every mutation takes the next
+    // value, which becomes both the collection version and the version of the touched entity.
+    private final AtomicLong versionClock = new AtomicLong();
+    private volatile long moviesVersion;
+    // Seat changes bump this without the session write lock, so it only ever moves forward
+    private final AtomicLong sessionsVersion = new AtomicLong();
+    private final Map<String, Long> movieVersions = new ConcurrentHashMap<>();
+    private final Map<String, Long> sessionVersions = new ConcurrentHashMap<>();
+
+    private final Object movieWriteLock = new Object();
+    private final Object sessionWriteLock = new Object();
+
+    private final MovieJournal journal;
+
+    public MovieRepository(MovieJournal journal) {
+        this.journal = journal;
+        boolean restored = journal.recover(new JournalReplay());
+        journal.start(this::captureState);
+        if (!restored) {
+            initializeData();
+        }
     }
 
     private void initializeData() {
-        movies.add(new Movie(
+        save(new Movie(
                 "mov-001",
                 "Tini zabutykh predkiv",
                 "Screen adaptation of Mykhailo Kotsiubynsky's novel",
@@ -35,7 +84,7 @@ public class MovieRepository {
                 "1965-09-04"
         ));
 
-        movies.add(new Movie(
+        save(new Movie(
                 "mov-002",
                 "Dodomu",
                 "Crimean Tatar Mustafa loses his eldest son in the war",
@@ -47,7 +96,7 @@ public class MovieRepository {
                 "2019-11-07"
         ));
 
-        movies.add(new Movie(
+        save(new Movie(
                 "mov-003",
                 "Moi dumky tykhi",
                 "Freelance sound engineer Vadym receives an order",
@@ -59,7 +108,7 @@ public class MovieRepository {
                 "2020-01-16"
         ));
 
-        sessions.add(new Session(
+        saveSession(new Session(
                 "sess-1001",
                 "mov-002",
                 "hall-2",
@@ -70,7 +119,7 @@ public class MovieRepository {
                 "Scheduled"
         ));
 
-        sessions.add(new Session(
+        saveSession(new Session(
                 "sess-1002",
                 "mov-003",
                 "hall-1",
@@ -83,56 +132,453 @@ public class MovieRepository {
     }
 
     public List<Movie> findAll() {
-        return new ArrayList<>(movies);
+        return new ArrayList<>(moviesInIdOrder.values());
+    }
+
+    /**
+     * Up to {@code limit} movies with id greater than {@code afterId} (or from the start when null), in id order.
+     */
+    public List<Movie> findPage(String afterId, int limit) {
+        Map<String, Movie> tail = afterId == null ? moviesInIdOrder : moviesInIdOrder.tailMap(afterId, false);
+        List<Movie> page = new ArrayList<>(Math.min(limit, 256));
+        for (Movie movie : tail.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(movie);
+        }
+        return page;
+    }
+
+    public Stream<Movie> streamAll() {
+        return moviesInIdOrder.values().stream();
     }
 
     public Optional<Movie> findById(String id) {
-        return movies.stream()
-                .filter(m -> m.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(movies.get(id));
     }
 
+    /**
+     * Full-text search over title and description; every term is matched as a token prefix
+     * and all terms must match. Results are ordered by relevance.
+     */
     public List<Movie> searchByTitle(String searchText) {
-        String searchLower = searchText.toLowerCase();
-        return movies.stream()
-                .filter(m -> m.getTitle().toLowerCase().contains(searchLower) ||
-                        m.getDescription().toLowerCase().contains(searchLower))
-                .collect(Collectors.toList());
+        List<String> movieIds = searchIndex.search(searchText);
+        List<Movie> result = new ArrayList<>(movieIds.size());
+        for (String movieId : movieIds) {
+            Movie movie = movies.get(movieId);
+            if (movie != null) {
+                result.add(movie);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Filters movies by facets using the bitmap index. Null or empty filters match everything.
+     *
+     * @param candidateIds when non-null, only these movies are considered and their order is kept
+     */
+    public FacetedMovies findByFacets(Collection<String> genres, Double minRating, String ageRestriction,
+                                      String distributor, List<String> candidateIds) {
+        MovieFacetIndex.Result result = facetIndex.query(genres, minRating, ageRestriction, distributor, candidateIds);
+        List<Movie> matching = new ArrayList<>(result.movieIds().size());
+        for (String movieId : result.movieIds()) {
+            Movie movie = movies.get(movieId);
+            if (movie != null) {
+                matching.add(movie);
+            }
+        }
+        return new FacetedMovies(matching, result.facetCounts());
     }
 
     public Movie save(Movie movie) {
-        movies.removeIf(m -> m.getId().equals(movie.getId()));
-        movies.add(movie);
+        CompletableFuture<Void> durable;
+        journal.checkWritable();
+        synchronized (movieWriteLock) {
+            applyMovie(movie);
+            durable = journal.appendMovie(movie);
+        }
+        journal.awaitDurable(durable);
         return movie;
     }
 
     public void deleteById(String id) {
-        movies.removeIf(m -> m.getId().equals(id));
+        CompletableFuture<Void> durable;
+        journal.checkWritable();
+        synchronized (movieWriteLock) {
+            removeMovie(id);
+            durable = journal.appendMovieDelete(id);
+        }
+        journal.awaitDurable(durable);
     }
 
     public List<Session> findAllSessions() {
-        return new ArrayList<>(sessions);
+        return new ArrayList<>(sessionsByStartTime.values());
+    }
+
+    /**
+     * Up to {@code limit} sessions ordered by (startTime, id) that come strictly after the given position,
+     * or from the start when {@code afterStartTime} is null.
+     */
+    public List<Session> findSessionsPage(LocalDateTime afterStartTime, String afterId, int limit) {
+        Map<SessionTimeKey, Session> tail = afterStartTime == null
+                ? sessionsByStartTime
+                : sessionsByStartTime.tailMap(new SessionTimeKey(afterStartTime, afterId), false);
+        List<Session> page = new ArrayList<>(Math.min(limit, 256));
+        for (Session session : tail.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(session);
+        }
+        return page;
+    }
+
+    public Stream<Session> streamAllSessions() {
+        return sessionsByStartTime.values().stream();
     }
 
     public Optional<Session> findSessionById(String id) {
-        return sessions.stream()
-                .filter(s -> s.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(sessions.get(id));
     }
 
     public List<Session> findSessionsByMovieId(String movieId) {
-        return sessions.stream()
-                .filter(s -> s.getMovieId().equals(movieId))
-                .collect(Collectors.toList());
+        return resolveSessions(sessionsByMovie.get(movieId));
+    }
+
+    public List<Session> findSessionsByHallId(String hallId) {
+        return resolveSessions(sessionsByHall.get(hallId));
+    }
+
+    /**
+     * Sessions starting in [from, to), ordered by start time, optionally narrowed to a hall and/or movie.
+     * Cost is proportional to the number of sessions in the window, not to the total history.
+     */
+    public List<Session> findSessionsStartingBetween(LocalDateTime from, LocalDateTime to,
+                                                     String hallId, String movieId) {
+        List<Session> result = new ArrayList<>();
+        for (Session session : sessionsByStartTime.subMap(
+                SessionTimeKey.lowerBound(from), true, SessionTimeKey.lowerBound(to), false).values()) {
+            if (hallId != null && !hallId.equals(session.getHallId())) {
+                continue;
+            }
+            if (movieId != null && !movieId.equals(session.getMovieId())) {
+                continue;
+            }
+            result.add(session);
+        }
+        return result;
+    }
+
+    /**
+     * Finds a non-cancelled session in the hall whose [startTime, endTime) intersects the given interval.
+     * Sessions of a hall never overlap, so ordered by start time they are ordered by end time too and
+     * the walk back from {@code end} stops at the first one ending by {@code start}. Empty sessions
+     * (endTime == startTime) do not follow that order and are skipped; they intersect nothing.
+     */
+    public Optional<Session> findOverlappingSession(String hallId, LocalDateTime start, LocalDateTime end,
+                                                    String excludeSessionId) {
+        ConcurrentSkipListMap<SessionTimeKey, SessionKeys> schedule = hallSchedules.get(hallId);
+        if (schedule == null) {
+            return Optional.empty();
+        }
+        for (Map.Entry<SessionTimeKey, SessionKeys> entry :
+                schedule.headMap(SessionTimeKey.lowerBound(end), false).descendingMap().entrySet()) {
+            String sessionId = entry.getKey().sessionId();
+            if (sessionId.equals(excludeSessionId)) {
+                continue;
+            }
+            SessionKeys keys = entry.getValue();
+            if (isEmpty(keys)) {
+                continue;
+            }
+            if (!keys.endTime().isAfter(start)) {
+                break;
+            }
+            return findSessionById(sessionId);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Non-cancelled sessions in the hall that intersect [from, to), ordered by start time.
+     */
+    public List<Session> findHallSessionsOverlapping(String hallId, LocalDateTime from, LocalDateTime to) {
+        ConcurrentSkipListMap<SessionTimeKey, SessionKeys> schedule = hallSchedules.get(hallId);
+        if (schedule == null) {
+            return Collections.emptyList();
+        }
+        List<Session> result = new ArrayList<>();
+        // only the last non-empty session starting before 'from' can straddle it
+        for (Map.Entry<SessionTimeKey, SessionKeys> entry :
+                schedule.headMap(SessionTimeKey.lowerBound(from), false).descendingMap().entrySet()) {
+            if (isEmpty(entry.getValue())) {
+                continue;
+            }
+            if (entry.getValue().endTime().isAfter(from)) {
+                findSessionById(entry.getKey().sessionId()).ifPresent(result::add);
+            }
+            break;
+        }
+        for (SessionTimeKey key : schedule.subMap(
+                SessionTimeKey.lowerBound(from), true, SessionTimeKey.lowerBound(to), false).keySet()) {
+            findSessionById(key.sessionId()).ifPresent(result::add);
+        }
+        return result;
     }
 
     public Session saveSession(Session session) {
-        sessions.removeIf(s -> s.getId().equals(session.getId()));
-        sessions.add(session);
+        CompletableFuture<Void> durable;
+        journal.checkWritable();
+        synchronized (sessionWriteLock) {
+            applySession(session);
+            durable = journal.appendSession(session);
+        }
+        journal.awaitDurable(durable);
         return session;
     }
 
+    /**
+     * Throws if changes can no longer be persisted; call before changing a session's seat count.
+     */
+    public void checkWritable() {
+        journal.checkWritable();
+    }
+
+    /**
+     * Publishes a seat count changed through {@link Session#tryReserveSeats} or
+     * {@link Session#releaseSeats}: bumps the versions and journals the session without taking
+     * the session write lock, so reservations on different sessions never contend.
+     *
+     * @return false if the session was deleted in the meantime
+     */
+    public boolean recordSeatChange(Session session) {
+        long version = versionClock.incrementAndGet();
+        AtomicReference<CompletableFuture<Void>> durable = new AtomicReference<>();
+        // Journaling inside compute orders the record against deleteSessionById, which removes
+        // the version entry before journaling the delete, so a deleted session is never revived.
+        sessionVersions.computeIfPresent(session.getId(), (id, current) -> {
+            durable.set(journal.appendSession(session));
+            return Math.max(current, version);
+        });
+        if (durable.get() == null) {
+            return false;
+        }
+        sessionsVersion.accumulateAndGet(version, Math::max);
+        journal.awaitDurable(durable.get());
+        return true;
+    }
+
     public void deleteSessionById(String id) {
-        sessions.removeIf(s -> s.getId().equals(id));
+        CompletableFuture<Void> durable;
+        journal.checkWritable();
+        synchronized (sessionWriteLock) {
+            removeSession(id);
+            durable = journal.appendSessionDelete(id);
+        }
+        journal.awaitDurable(durable);
+    }
+
+    /**
+     * Version of the movie collection; changes whenever any movie is saved or deleted.
+     */
+    public long getMoviesVersion() {
+        return moviesVersion;
+    }
+
+    /**
+     * Version of the session collection; changes whenever any session is saved or deleted.
+     */
+    public long getSessionsVersion() {
+        return sessionsVersion.get();
+    }
+
+    public Optional<Long> getMovieVersion(String id) {
+        return Optional.ofNullable(movieVersions.get(id));
+    }
+
+    public Optional<Long> getSessionVersion(String id) {
+        return Optional.ofNullable(sessionVersions.get(id));
+    }
+
+    // Callers hold movieWriteLock
+    private void applyMovie(Movie movie) {
+        movies.put(movie.getId(), movie);
+        moviesInIdOrder.put(movie.getId(), movie);
+        searchIndex.index(movie);
+        facetIndex.index(movie);
+
+        long version = versionClock.incrementAndGet();
+        movieVersions.put(movie.getId(), version);
+        moviesVersion = version;
+    }
+
+    // Callers hold movieWriteLock
+    private void removeMovie(String id) {
+        movies.remove(id);
+        moviesInIdOrder.remove(id);
+        searchIndex.remove(id);
+        facetIndex.remove(id);
+
+        movieVersions.remove(id);
+        moviesVersion = versionClock.incrementAndGet();
+    }
+
+    // Callers hold sessionWriteLock
+    private void applySession(Session session) {
+        SessionKeys previous = indexedSessionKeys.get(session.getId());
+        SessionKeys current = new SessionKeys(session.getMovieId(), session.getHallId(),
+                session.getStartTime(), session.getEndTime(), isBlockingHall(session));
+
+        if (previous != null && !previous.equals(current)) {
+            unindexSession(session.getId(), previous);
+        }
+        sessions.put(session.getId(), session);
+        indexSession(session.getId(), current);
+
+        long version = versionClock.incrementAndGet();
+        sessionVersions.merge(session.getId(), version, Math::max);
+        sessionsVersion.accumulateAndGet(version, Math::max);
+    }
+
+    // Callers hold sessionWriteLock
+    private void removeSession(String id) {
+        SessionKeys previous = indexedSessionKeys.get(id);
+        if (previous != null) {
+            unindexSession(id, previous);
+        }
+        sessions.remove(id);
+
+        sessionVersions.remove(id);
+        sessionsVersion.accumulateAndGet(versionClock.incrementAndGet(), Math::max);
+    }
+
+    /**
+     * Consistent copy of all movies and sessions for a journal snapshot. Both write locks are
+     * held only while references are copied; serialization happens on the snapshot thread.
+     */
+    private MovieJournal.State captureState() {
+        synchronized (movieWriteLock) {
+            synchronized (sessionWriteLock) {
+                return new MovieJournal.State(journal.lastSequence(),
+                        new ArrayList<>(moviesInIdOrder.values()), new ArrayList<>(sessions.values()));
+            }
+        }
+    }
+
+    private void indexSession(String sessionId, SessionKeys keys) {
+        addToIndex(sessionsByMovie, keys.movieId(), sessionId);
+        addToIndex(sessionsByHall, keys.hallId(), sessionId);
+        if (keys.startTime() != null) {
+            SessionTimeKey timeKey = new SessionTimeKey(keys.startTime(), sessionId);
+            sessionsByStartTime.put(timeKey, sessions.get(sessionId));
+            if (keys.blocksHall()) {
+                hallSchedules.computeIfAbsent(keys.hallId(), h -> new ConcurrentSkipListMap<>()).put(timeKey, keys);
+            }
+        }
+        indexedSessionKeys.put(sessionId, keys);
+    }
+
+    private void unindexSession(String sessionId, SessionKeys keys) {
+        removeFromIndex(sessionsByMovie, keys.movieId(), sessionId);
+        removeFromIndex(sessionsByHall, keys.hallId(), sessionId);
+        if (keys.startTime() != null) {
+            SessionTimeKey timeKey = new SessionTimeKey(keys.startTime(), sessionId);
+            sessionsByStartTime.remove(timeKey);
+            if (keys.blocksHall()) {
+                hallSchedules.computeIfPresent(keys.hallId(), (h, schedule) -> {
+                    schedule.remove(timeKey);
+                    return schedule.isEmpty() ? null : schedule;
+                });
+            }
+        }
+        indexedSessionKeys.remove(sessionId);
+    }
+
+    private static boolean isBlockingHall(Session session) {
+        return session.getHallId() != null && session.getEndTime() != null &&
+                !"Cancelled".equalsIgnoreCase(session.getStatus());
+    }
+
+    private List<Session> resolveSessions(Set<String> sessionIds) {
+        if (sessionIds == null) {
+            return Collections.emptyList();
+        }
+        List<Session> result = new ArrayList<>(sessionIds.size());
+        for (String sessionId : sessionIds) {
+            Session session = sessions.get(sessionId);
+            if (session != null) {
+                result.add(session);
+            }
+        }
+        return result;
+    }
+
+    private static void addToIndex(Map<String, Set<String>> index, String key, String id) {
+        if (key == null) {
+            return;
+        }
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    private static void removeFromIndex(Map<String, Set<String>> index, String key, String id) {
+        if (key == null) {
+            return;
+        }
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private class JournalReplay implements MovieJournal.Replay {
+        @Override
+        public void putMovie(Movie movie) {
+            synchronized (movieWriteLock) {
+                applyMovie(movie);
+            }
+        }
+
+        @Override
+        public void deleteMovie(String id) {
+            synchronized (movieWriteLock) {
+                removeMovie(id);
+            }
+        }
+
+        @Override
+        public void putSession(Session session) {
+            synchronized (sessionWriteLock) {
+                applySession(session);
+            }
+        }
+
+        @Override
+        public void deleteSession(String id) {
+            synchronized (sessionWriteLock) {
+                removeSession(id);
+            }
+        }
+    }
+
+    private static boolean isEmpty(SessionKeys keys) {
+        return !keys.endTime().isAfter(keys.startTime());
+    }
+
+    private record SessionKeys(String movieId, String hallId, LocalDateTime startTime,
+                               LocalDateTime endTime, boolean blocksHall) {}
+
+    private record SessionTimeKey(LocalDateTime startTime, String sessionId) implements Comparable<SessionTimeKey> {
+
+        static SessionTimeKey lowerBound(LocalDateTime time) {
+            return new SessionTimeKey(time, "");
+        }
+
+        @Override
+        public int compareTo(SessionTimeKey other) {
+            int byTime = startTime.compareTo(other.startTime);
+            return byTime != 0 ? byTime : sessionId.compareTo(other.sessionId);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory inverted index over movie titles and descriptions.
+ *
+ * Tokens are kept in a sorted map so a query term matches every token it is a prefix of.
+ * Multi-term queries are AND-ed; results are ranked by the summed term weights
+ * (title hits weigh more than description hits, whole-token hits more than prefix hits).
+ */
+class MovieSearchIndex {
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int EXACT_MATCH_BONUS = 1;
+
+    // token -> (movieId -> weight)
+    private final ConcurrentSkipListMap<String, Map<String, Integer>> postings = new ConcurrentSkipListMap<>();
+
+    // movieId -> tokens it was indexed under, used to unindex on update and delete
+    private final Map<String, Map<String, Integer>> indexedTokens = new ConcurrentHashMap<>();
+
+    synchronized void index(Movie movie) {
+        remove(movie.getId());
+
+        Map<String, Integer> weights = new HashMap<>();
+        for (String token : tokenize(movie.getTitle())) {
+            weights.merge(token, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(movie.getDescription())) {
+            weights.merge(token, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+
+        weights.forEach((token, weight) ->
+                postings.computeIfAbsent(token, t -> new ConcurrentHashMap<>()).put(movie.getId(), weight));
+        indexedTokens.put(movie.getId(), weights);
+    }
+
+    synchronized void remove(String movieId) {
+        Map<String, Integer> previous = indexedTokens.remove(movieId);
+        if (previous == null) {
+            return;
+        }
+        for (String token : previous.keySet()) {
+            postings.computeIfPresent(token, (t, ids) -> {
+                ids.remove(movieId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * @return ids of movies matching every query term, best match first
+     */
+    List<String> search(String query) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Integer> scores = null;
+        for (String term : terms) {
+            Map<String, Integer> termScores = scoreTerm(term);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                Map<String, Integer> intersection = new HashMap<>();
+                for (Map.Entry<String, Integer> entry : scores.entrySet()) {
+                    Integer termScore = termScores.get(entry.getKey());
+                    if (termScore != null) {
+                        intersection.put(entry.getKey(), entry.getValue() + termScore);
+                    }
+                }
+                scores = intersection;
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        List<String> result = new ArrayList<>(ranked.size());
+        for (Map.Entry<String, Integer> entry : ranked) {
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+
+    private Map<String, Integer> scoreTerm(String term) {
+        Map<String, Integer> scores = new HashMap<>();
+        NavigableMap<String, Map<String, Integer>> matches =
+                postings.subMap(term, true, term + Character.MAX_VALUE, false);
+
+        for (Map.Entry<String, Map<String, Integer>> tokenEntry : matches.entrySet()) {
+            int bonus = tokenEntry.getKey().equals(term) ? EXACT_MATCH_BONUS : 0;
+            tokenEntry.getValue().forEach((movieId, weight) ->
+                    scores.merge(movieId, weight + bonus, Math::max));
+        }
+        return scores;
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+}
@@ -1,24 +1,52 @@
 package com.nure.cinema.movie.service;
 
 
+import com.nure.cinema.movie.cache.ResponseByteCache;
 import com.nure.cinema.movie.dto.*;
 import com.nure.cinema.movie.exception.MovieNotFoundException;
+import com.nure.cinema.movie.exception.SeatsUnavailableException;
+import com.nure.cinema.movie.exception.SessionConflictException;
 import com.nure.cinema.movie.exception.SessionNotFoundException;
+import com.nure.cinema.movie.exception.StorageUnavailableException;
 import com.nure.cinema.movie.model.Movie;
 import com.nure.cinema.movie.model.Session;
+import com.nure.cinema.movie.repository.FacetedMovies;
 import com.nure.cinema.movie.repository.MovieRepository;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class MovieService {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String MOVIE_CURSOR_PREFIX = "movie:";
+    private static final String SESSION_CURSOR_PREFIX = "session:";
+
+    private static final String MOVIE_CACHE_KEY = "movie:";
+    private static final String SESSION_CACHE_KEY = "session:";
+
     private final MovieRepository movieRepository;
+    private final ResponseByteCache responseCache;
 
-    public MovieService(MovieRepository movieRepository) {
+    // Serializes hall overlap checks with the write that follows them
+    private final Object scheduleLock = new Object();
+
+    public MovieService(MovieRepository movieRepository, ResponseByteCache responseCache) {
         this.movieRepository = movieRepository;
+        this.responseCache = responseCache;
     }
 
     public List<MovieDTO> getAllMovies() {
@@ -27,14 +55,49 @@ public class MovieService {
                 .collect(Collectors.toList());
     }
 
+    public CursorPage<MovieDTO> getMoviesPage(String cursor, int limit) {
+        validatePageSize(limit);
+        String afterId = cursor != null ? decodeCursor(cursor, MOVIE_CURSOR_PREFIX) : null;
+
+        List<Movie> movies = movieRepository.findPage(afterId, limit + 1);
+        String nextCursor = null;
+        if (movies.size() > limit) {
+            movies = movies.subList(0, limit);
+            nextCursor = encodeCursor(MOVIE_CURSOR_PREFIX, movies.get(limit - 1).getId());
+        }
+        return new CursorPage<>(
+                movies.stream().map(this::convertToDTO).collect(Collectors.toList()),
+                nextCursor
+        );
+    }
+
+    /**
+     * Lazily converts movies in id order; nothing is materialized up front.
+     */
+    public Stream<MovieDTO> streamAllMovies() {
+        return movieRepository.streamAll().map(this::convertToDTO);
+    }
+
     public MovieDTO getMovieById(String id) {
         Movie movie = movieRepository.findById(id)
                 .orElseThrow(() -> new MovieNotFoundException("Movie with ID " + id + " not found"));
         return convertToDTO(movie);
     }
 
+    /**
+     * JSON body of the movie, served from the response cache while the movie is unchanged.
+     */
+    public byte[] getMovieJson(String id) {
+        // Read the version before the entity so a cached body is never newer-versioned than its content
+        long version = movieRepository.getMovieVersion(id)
+                .orElseThrow(() -> new MovieNotFoundException("Movie with ID " + id + " not found"));
+        Movie movie = movieRepository.findById(id)
+                .orElseThrow(() -> new MovieNotFoundException("Movie with ID " + id + " not found"));
+        return responseCache.get(MOVIE_CACHE_KEY + id, version, () -> convertToDTO(movie));
+    }
+
     public List<MovieDTO> searchMovies(String searchText) {
-        if (searchText == null || searchText.isEmpty()) {
+        if (searchText == null || searchText.isBlank()) {
             return getAllMovies();
         }
         return movieRepository.searchByTitle(searchText).stream()
@@ -42,6 +105,35 @@ public class MovieService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Facet filtering backed by the repository bitmap index, optionally narrowed by full-text search.
+     * Search results keep their relevance order; otherwise movies are ordered by id.
+     */
+    public MovieFilterResultDTO filterMovies(String searchText, List<String> genres, Double minRating,
+                                             String ageRestriction, String distributor) {
+        if (minRating != null && (minRating < 0 || minRating > 10)) {
+            throw new IllegalArgumentException("Minimum rating must be between 0 and 10");
+        }
+
+        List<String> candidateIds = null;
+        if (searchText != null && !searchText.isBlank()) {
+            candidateIds = movieRepository.searchByTitle(searchText).stream()
+                    .map(Movie::getId)
+                    .collect(Collectors.toList());
+        }
+
+        FacetedMovies faceted = movieRepository.findByFacets(genres, minRating, ageRestriction,
+                distributor, candidateIds);
+
+        MovieFilterResultDTO result = new MovieFilterResultDTO();
+        result.setItems(faceted.movies().stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList()));
+        result.setTotal(faceted.movies().size());
+        result.setFacets(faceted.facetCounts());
+        return result;
+    }
+
     public MovieDTO createMovie(CreateMovieRequest request) {
         validateMovieRequest(request);
 
@@ -82,6 +174,7 @@ public class MovieService {
         }
 
         Movie updatedMovie = movieRepository.save(existingMovie);
+        responseCache.invalidate(MOVIE_CACHE_KEY + id);
         return convertToDTO(updatedMovie);
     }
 
@@ -90,6 +183,7 @@ public class MovieService {
             throw new MovieNotFoundException("Movie with ID " + id + " not found");
         }
         movieRepository.deleteById(id);
+        responseCache.invalidate(MOVIE_CACHE_KEY + id);
     }
 
     public List<SessionDTO> getAllSessions() {
@@ -98,6 +192,44 @@ public class MovieService {
                 .collect(Collectors.toList());
     }
 
+    public CursorPage<SessionDTO> getSessionsPage(String cursor, int limit) {
+        validatePageSize(limit);
+        LocalDateTime afterStartTime = null;
+        String afterId = null;
+        if (cursor != null) {
+            String position = decodeCursor(cursor, SESSION_CURSOR_PREFIX);
+            int separator = position.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            try {
+                afterStartTime = LocalDateTime.parse(position.substring(0, separator));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            afterId = position.substring(separator + 1);
+        }
+
+        List<Session> sessions = movieRepository.findSessionsPage(afterStartTime, afterId, limit + 1);
+        String nextCursor = null;
+        if (sessions.size() > limit) {
+            sessions = sessions.subList(0, limit);
+            Session last = sessions.get(limit - 1);
+            nextCursor = encodeCursor(SESSION_CURSOR_PREFIX, last.getStartTime() + "|" + last.getId());
+        }
+        return new CursorPage<>(
+                sessions.stream().map(this::convertSessionToDTO).collect(Collectors.toList()),
+                nextCursor
+        );
+    }
+
+    /**
+     * Lazily converts sessions in start time order; nothing is materialized up front.
+     */
+    public Stream<SessionDTO> streamAllSessions() {
+        return movieRepository.streamAllSessions().map(this::convertSessionToDTO);
+    }
+
     public List<SessionDTO> getSessionsByMovieId(String movieId) {
         if (!movieRepository.findById(movieId).isPresent()) {
             throw new MovieNotFoundException("Movie with ID " + movieId + " not found");
@@ -108,12 +240,51 @@ public class MovieService {
                 .collect(Collectors.toList());
     }
 
+    public List<SessionDTO> getSessionsBetween(LocalDateTime from, LocalDateTime to,
+                                               String hallId, String movieId) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Both 'from' and 'to' are required");
+        }
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("'to' must be after 'from'");
+        }
+        return movieRepository.findSessionsStartingBetween(from, to, hallId, movieId).stream()
+                .map(this::convertSessionToDTO)
+                .collect(Collectors.toList());
+    }
+
+    public List<SessionDTO> getUpcomingSessions(int hours, String hallId, String movieId) {
+        if (hours <= 0) {
+            throw new IllegalArgumentException("Hours must be positive");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return getSessionsBetween(now, now.plusHours(hours), hallId, movieId);
+    }
+
+    public List<SessionDTO> getSessionsOnDate(LocalDate date, String hallId, String movieId) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date is required");
+        }
+        return getSessionsBetween(date.atStartOfDay(), date.plusDays(1).atStartOfDay(), hallId, movieId);
+    }
+
     public SessionDTO getSessionById(String sessionId) {
         Session session = movieRepository.findSessionById(sessionId)
                 .orElseThrow(() -> new SessionNotFoundException("Session with ID " + sessionId + " not found"));
         return convertSessionToDTO(session);
     }
 
+    /**
+     * JSON body of the session, served from the response cache while the session is unchanged.
+     */
+    public byte[] getSessionJson(String sessionId) {
+        long version = movieRepository.getSessionVersion(sessionId)
+                .orElseThrow(() -> new SessionNotFoundException("Session with ID " + sessionId + " not found"));
+        Session session = movieRepository.findSessionById(sessionId)
+                .orElseThrow(() -> new SessionNotFoundException("Session with ID " + sessionId + " not found"));
+        return responseCache.get(SESSION_CACHE_KEY + sessionId, version, () -> convertSessionToDTO(session));
+    }
+
     public SessionDTO createSession(CreateSessionRequest request) {
         validateSessionRequest(request);
 
@@ -132,29 +303,46 @@ public class MovieService {
                 request.getStatus()
         );
 
-        Session savedSession = movieRepository.saveSession(session);
-        return convertSessionToDTO(savedSession);
+        synchronized (scheduleLock) {
+            checkHallAvailability(session.getHallId(), session.getStartTime(), session.getEndTime(),
+                    session.getStatus(), session.getId());
+            Session savedSession = movieRepository.saveSession(session);
+            return convertSessionToDTO(savedSession);
+        }
     }
 
     public SessionDTO updateSession(String id, UpdateSessionRequest request) {
         Session existingSession = movieRepository.findSessionById(id)
                 .orElseThrow(() -> new SessionNotFoundException("Session with ID " + id + " not found"));
 
-        if (request.getStartTime() != null) {
-            existingSession.setStartTime(request.getStartTime());
-        }
-        if (request.getEndTime() != null) {
-            existingSession.setEndTime(request.getEndTime());
-        }
-        if (request.getAvailableSeats() != null) {
-            existingSession.setAvailableSeats(request.getAvailableSeats());
-        }
-        if (request.getStatus() != null) {
-            existingSession.setStatus(request.getStatus());
+        LocalDateTime startTime = request.getStartTime() != null
+                ? request.getStartTime() : existingSession.getStartTime();
+        LocalDateTime endTime = request.getEndTime() != null
+                ? request.getEndTime() : existingSession.getEndTime();
+        String status = request.getStatus() != null
+                ? request.getStatus() : existingSession.getStatus();
+
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("End time must be after start time");
         }
 
-        Session updatedSession = movieRepository.saveSession(existingSession);
-        return convertSessionToDTO(updatedSession);
+        synchronized (scheduleLock) {
+            checkHallAvailability(existingSession.getHallId(), startTime, endTime, status, id);
+
+            existingSession.setStartTime(startTime);
+            existingSession.setEndTime(endTime);
+            existingSession.setStatus(status);
+            if (request.getAvailableSeats() != null) {
+                existingSession.setAvailableSeats(request.getAvailableSeats());
+                if (request.getAvailableSeats() > existingSession.getTotalSeats()) {
+                    existingSession.setTotalSeats(request.getAvailableSeats());
+                }
+            }
+
+            Session updatedSession = movieRepository.saveSession(existingSession);
+            responseCache.invalidate(SESSION_CACHE_KEY + id);
+            return convertSessionToDTO(updatedSession);
+        }
     }
 
     public void deleteSession(String id) {
@@ -162,6 +350,192 @@ public class MovieService {
             throw new SessionNotFoundException("Session with ID " + id + " not found");
         }
         movieRepository.deleteSessionById(id);
+        responseCache.invalidate(SESSION_CACHE_KEY + id);
+    }
+
+    /**
+     * Takes {@code count} seats of a session; fails immediately with 409 if fewer are left.
+     */
+    public SeatInventoryDTO reserveSeats(String sessionId, int count) {
+        validateSeatCount(count);
+        Session session = movieRepository.findSessionById(sessionId)
+                .orElseThrow(() -> new SessionNotFoundException("Session with ID " + sessionId + " not found"));
+        if ("Cancelled".equalsIgnoreCase(session.getStatus())) {
+            throw new SeatsUnavailableException("Session " + sessionId + " is cancelled");
+        }
+
+        movieRepository.checkWritable();
+        int left = session.tryReserveSeats(count);
+        if (left < 0) {
+            throw new SeatsUnavailableException("Not enough seats for session " + sessionId + ": requested " +
+                    count + ", available " + session.getAvailableSeats());
+        }
+        publishSeatChange(session);
+        return new SeatInventoryDTO(sessionId, -count, left);
+    }
+
+    public SeatInventoryDTO releaseSeats(String sessionId, int count) {
+        validateSeatCount(count);
+        Session session = movieRepository.findSessionById(sessionId)
+                .orElseThrow(() -> new SessionNotFoundException("Session with ID " + sessionId + " not found"));
+
+        movieRepository.checkWritable();
+        int left = session.releaseSeats(count);
+        if (left < 0) {
+            throw new SeatsUnavailableException("Cannot release " + count + " seats of session " + sessionId +
+                    ": only " + (session.getTotalSeats() - session.getAvailableSeats()) + " of " +
+                    session.getTotalSeats() + " are taken");
+        }
+        publishSeatChange(session);
+        return new SeatInventoryDTO(sessionId, count, left);
+    }
+
+    /**
+     * Reserves seats in several sessions, all or nothing. Sessions are reserved in id order and
+     * already taken seats are released again if a later session does not have enough.
+     */
+    public List<SeatInventoryDTO> reserveSeats(List<SeatReservationRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("At least one reservation is required");
+        }
+        Map<String, Integer> countsBySession = new TreeMap<>();
+        for (SeatReservationRequest request : requests) {
+            if (request.getSessionId() == null || request.getSessionId().isBlank()) {
+                throw new IllegalArgumentException("Session ID is required");
+            }
+            validateSeatCount(request.getCount());
+            countsBySession.merge(request.getSessionId(), request.getCount(), Integer::sum);
+        }
+        for (String sessionId : countsBySession.keySet()) {
+            if (!movieRepository.findSessionById(sessionId).isPresent()) {
+                throw new SessionNotFoundException("Session with ID " + sessionId + " not found");
+            }
+        }
+
+        List<SeatInventoryDTO> reserved = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Integer> entry : countsBySession.entrySet()) {
+                reserved.add(reserveSeats(entry.getKey(), entry.getValue()));
+            }
+        } catch (RuntimeException e) {
+            for (SeatInventoryDTO done : reserved) {
+                try {
+                    releaseSeats(done.getSessionId(), -done.getChangedBy());
+                } catch (SessionNotFoundException deleted) {
+                    System.out.println("[SEATS] Session " + done.getSessionId() + " deleted during batch rollback");
+                } catch (StorageUnavailableException failed) {
+                    // nothing is persisted any more; the restart reloads the last durable seat counts
+                    System.out.println("[SEATS] Cannot roll back session " + done.getSessionId() + ": " +
+                            failed.getMessage());
+                }
+            }
+            throw e;
+        }
+        return reserved;
+    }
+
+    /**
+     * Gaps between non-cancelled sessions of a hall on the given day.
+     */
+    public List<TimeSlotDTO> getFreeSlots(String hallId, LocalDate date, int minDurationMinutes) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date is required");
+        }
+        if (minDurationMinutes < 0) {
+            throw new IllegalArgumentException("Minimum duration must not be negative");
+        }
+
+        LocalDateTime dayStart = date.atStartOfDay();
+        LocalDateTime dayEnd = date.plusDays(1).atStartOfDay();
+
+        List<TimeSlotDTO> slots = new ArrayList<>();
+        LocalDateTime cursor = dayStart;
+        for (Session session : movieRepository.findHallSessionsOverlapping(hallId, dayStart, dayEnd)) {
+            if (session.getStartTime().isAfter(cursor)) {
+                addSlot(slots, cursor, session.getStartTime(), minDurationMinutes);
+            }
+            if (session.getEndTime().isAfter(cursor)) {
+                cursor = session.getEndTime();
+            }
+        }
+        if (cursor.isBefore(dayEnd)) {
+            addSlot(slots, cursor, dayEnd, minDurationMinutes);
+        }
+        return slots;
+    }
+
+    private void addSlot(List<TimeSlotDTO> slots, LocalDateTime start, LocalDateTime end, int minDurationMinutes) {
+        long minutes = ChronoUnit.MINUTES.between(start, end);
+        if (minutes > 0 && minutes >= minDurationMinutes) {
+            slots.add(new TimeSlotDTO(start, end, minutes));
+        }
+    }
+
+    private void publishSeatChange(Session session) {
+        if (!movieRepository.recordSeatChange(session)) {
+            throw new SessionNotFoundException("Session with ID " + session.getId() + " not found");
+        }
+        responseCache.invalidate(SESSION_CACHE_KEY + session.getId());
+    }
+
+    private void validateSeatCount(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Seat count must be positive");
+        }
+    }
+
+    private void validatePageSize(int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    private String encodeCursor(String prefix, String position) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((prefix + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodeCursor(String cursor, String prefix) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (!decoded.startsWith(prefix)) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return decoded.substring(prefix.length());
+    }
+
+    private void checkHallAvailability(String hallId, LocalDateTime startTime, LocalDateTime endTime,
+                                       String status, String sessionId) {
+        if (hallId == null || "Cancelled".equalsIgnoreCase(status)) {
+            return;
+        }
+        movieRepository.findOverlappingSession(hallId, startTime, endTime, sessionId)
+                .ifPresent(conflict -> {
+                    throw new SessionConflictException(
+                            "Hall " + hallId + " is already booked from " + conflict.getStartTime() +
+                                    " to " + conflict.getEndTime() + " by session " + conflict.getId()
+                    );
+                });
+    }
+
+    public long getMoviesVersion() {
+        return movieRepository.getMoviesVersion();
+    }
+
+    public long getSessionsVersion() {
+        return movieRepository.getSessionsVersion();
+    }
+
+    public Optional<Long> getMovieVersion(String id) {
+        return movieRepository.getMovieVersion(id);
+    }
+
+    public Optional<Long> getSessionVersion(String id) {
+        return movieRepository.getSessionVersion(id);
     }
 
     private MovieDTO convertToDTO(Movie movie) {
@@ -215,7 +589,7 @@ public class MovieService {
         if (request.getStartTime() == null || request.getEndTime() == null) {
             throw new IllegalArgumentException("Start time and end time are required");
         }
-        if (request.getEndTime().isBefore(request.getStartTime())) {
+        if (!request.getEndTime().isAfter(request.getStartTime())) {
             throw new IllegalArgumentException("End time must be after start time");
         }
     }
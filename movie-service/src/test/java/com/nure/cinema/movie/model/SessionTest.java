@@ -0,0 +1,66 @@
+package com.nure.cinema.movie.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SessionTest {
+
+    @Test
+    void releaseNeverExceedsTotalSeats() {
+        Session session = session(10);
+        assertEquals(7, session.tryReserveSeats(3));
+
+        assertEquals(-1, session.releaseSeats(4));
+        assertEquals(7, session.getAvailableSeats());
+        assertEquals(10, session.releaseSeats(3));
+        assertEquals(-1, session.releaseSeats(1));
+    }
+
+    @Test
+    void concurrentReleasesStopAtTotalSeats() throws Exception {
+        Session session = session(100);
+        assertEquals(0, session.tryReserveSeats(100));
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> released = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            released.add(executor.submit(() -> {
+                start.await();
+                int count = 0;
+                for (int i = 0; i < 100; i++) {
+                    if (session.releaseSeats(1) >= 0) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> result : released) {
+            total += result.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(100, total);
+        assertEquals(100, session.getAvailableSeats());
+    }
+
+    private static Session session(int seats) {
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 10, 0);
+        return new Session("sess-test", "mov-001", "hall-test", start, start.plusHours(2),
+                new Session.Price(8.0, "EUR"), seats, "Scheduled");
+    }
+}
@@ -0,0 +1,62 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.model.Movie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieFacetIndexTest {
+
+    private MovieFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new MovieFacetIndex();
+        index.index(movie("mov-1", List.of("Drama"), 8.0, "16+", "Studio A"));
+        index.index(movie("mov-2", List.of("Drama", "History"), 7.0, "12+", "Studio A"));
+        index.index(movie("mov-3", List.of("Comedy"), 6.5, "12+", "Studio B"));
+        index.index(movie("mov-4", List.of("Comedy", "Romance"), 5.0, "16+", "Studio B"));
+    }
+
+    @Test
+    void selectedFacetKeepsCountsOfItsOtherValues() {
+        MovieFacetIndex.Result result = index.query(List.of("Drama"), null, null, null, null);
+
+        assertEquals(List.of("mov-1", "mov-2"), result.movieIds());
+        assertEquals(Map.of("Drama", 2, "Comedy", 2, "History", 1, "Romance", 1),
+                result.facetCounts().get(MovieFacetIndex.GENRE));
+        assertEquals(Map.of("16+", 1, "12+", 1), result.facetCounts().get(MovieFacetIndex.AGE_RESTRICTION));
+        assertEquals(Map.of("Studio A", 2), result.facetCounts().get(MovieFacetIndex.DISTRIBUTOR));
+    }
+
+    @Test
+    void eachFacetIsCountedWithTheOtherFilters() {
+        MovieFacetIndex.Result result = index.query(List.of("Comedy"), null, "12+", null, null);
+
+        assertEquals(List.of("mov-3"), result.movieIds());
+        // genres of 12+ movies, age restrictions of comedies, distributors of 12+ comedies
+        assertEquals(Map.of("Drama", 1, "History", 1, "Comedy", 1),
+                result.facetCounts().get(MovieFacetIndex.GENRE));
+        assertEquals(Map.of("16+", 1, "12+", 1), result.facetCounts().get(MovieFacetIndex.AGE_RESTRICTION));
+        assertEquals(Map.of("Studio B", 1), result.facetCounts().get(MovieFacetIndex.DISTRIBUTOR));
+    }
+
+    @Test
+    void ratingFilterNarrowsEveryFacet() {
+        MovieFacetIndex.Result result = index.query(null, 6.5, null, "Studio B", null);
+
+        assertEquals(List.of("mov-3"), result.movieIds());
+        assertEquals(Map.of("Comedy", 1), result.facetCounts().get(MovieFacetIndex.GENRE));
+        assertEquals(Map.of("Studio A", 2, "Studio B", 1), result.facetCounts().get(MovieFacetIndex.DISTRIBUTOR));
+    }
+
+    private static Movie movie(String id, List<String> genres, double rating, String ageRestriction,
+                               String distributor) {
+        return new Movie(id, "Title " + id, "Description", 100, genres, rating, ageRestriction, distributor,
+                "2024-01-01");
+    }
+}
@@ -0,0 +1,183 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.model.Movie;
+import com.nure.cinema.movie.model.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Persistence cost of the movie journal.
+ *
+ * {@link #recover} measures startup: building a MovieRepository from 1M stored sessions, either
+ * from a snapshot or by replaying the write-ahead log alone.
+ * {@link #saveSession} measures durable session writes; run it with several threads to see group
+ * commit, since max-batch-records=1 forces one fsync per write.
+ *
+ * mvn -Pbenchmark verify -Dbenchmark="MovieJournalBenchmark.recover"
+ * mvn -Pbenchmark verify -Dbenchmark="MovieJournalBenchmark.saveSession -t 16"
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class MovieJournalBenchmark {
+
+    private static final int MOVIES = 1000;
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    @State(Scope.Benchmark)
+    public static class StoredSessions {
+
+        @Param({"1000000"})
+        public int sessions;
+
+        @Param({"snapshot", "log"})
+        public String source;
+
+        private Path root;
+        private Path work;
+        private MovieJournal journal;
+
+        @Setup(Level.Trial)
+        public void store() throws IOException {
+            root = Files.createTempDirectory("movie-journal-bench");
+            Path snapshotDir = Files.createDirectories(root.resolve("snapshot"));
+            Path logDir = Files.createDirectories(root.resolve("log"));
+
+            // no snapshot while the lists below are filled
+            MovieJournal writer = journal(snapshotDir, 4096, Long.MAX_VALUE);
+            List<Movie> movies = new ArrayList<>();
+            List<Session> stored = new ArrayList<>();
+            writer.start(() -> new MovieJournal.State(writer.lastSequence(), movies, stored));
+
+            CompletableFuture<Void> last = null;
+            for (int m = 0; m < MOVIES; m++) {
+                Movie movie = movie(m);
+                movies.add(movie);
+                last = writer.appendMovie(movie);
+            }
+            for (int s = 0; s < sessions; s++) {
+                Session session = session(s);
+                stored.add(session);
+                last = writer.appendSession(session);
+            }
+            writer.awaitDurable(last);
+
+            try (Stream<Path> files = Files.list(snapshotDir)) {
+                for (Path file : files.toList()) {
+                    Files.copy(file, logDir.resolve(file.getFileName()));
+                }
+            }
+            // close() snapshots and deletes the segments the snapshot covers
+            writer.close();
+        }
+
+        @Setup(Level.Iteration)
+        public void copy() throws IOException {
+            work = Files.createDirectories(root.resolve("work"));
+            try (Stream<Path> files = Files.list(root.resolve(source))) {
+                for (Path file : files.toList()) {
+                    Files.copy(file, work.resolve(file.getFileName()));
+                }
+            }
+            // replaying the log would otherwise start a snapshot right away
+            journal = journal(work, 4096, Long.MAX_VALUE);
+        }
+
+        @TearDown(Level.Iteration)
+        public void closeJournal() throws IOException {
+            journal.close();
+            delete(work);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteFiles() throws IOException {
+            delete(root);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Writes {
+
+        @Param({"4096", "1"})
+        public int maxBatchRecords;
+
+        private Path root;
+        private MovieJournal journal;
+        private MovieRepository repository;
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            root = Files.createTempDirectory("movie-journal-bench");
+            journal = journal(root, maxBatchRecords, 100000);
+            repository = new MovieRepository(journal);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            journal.close();
+            delete(root);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public MovieRepository recover(StoredSessions stored) {
+        return new MovieRepository(stored.journal);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Session saveSession(Writes writes) {
+        return writes.repository.saveSession(session(ThreadLocalRandom.current().nextInt(10000)));
+    }
+
+    private static MovieJournal journal(Path dir, int maxBatchRecords, long snapshotEveryRecords) {
+        return new MovieJournal(true, dir.toString(), maxBatchRecords, snapshotEveryRecords, 300);
+    }
+
+    private static Movie movie(int m) {
+        return new Movie("bench-movie-" + m, "Movie " + m, "Description " + m, 120,
+                List.of("Drama"), 7.5, "12+", "Distributor", "2030-01-01");
+    }
+
+    private static Session session(int s) {
+        LocalDateTime startTime = START.plusHours(3L * (s / 100));
+        return new Session("bench-sess-" + s, "bench-movie-" + (s % MOVIES), "bench-hall-" + (s % 100),
+                startTime, startTime.plusHours(2), new Session.Price(8.0, "EUR"), 120, "SCHEDULED");
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
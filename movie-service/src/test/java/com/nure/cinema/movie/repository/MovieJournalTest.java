@@ -0,0 +1,114 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.exception.StorageUnavailableException;
+import com.nure.cinema.movie.model.Movie;
+import com.nure.cinema.movie.model.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieJournalTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void failedWriteRejectsLaterChanges() throws IOException {
+        Path dir = root.resolve("data");
+        MovieJournal seeded = journal(dir);
+        new MovieRepository(seeded);
+        seeded.close();
+
+        // recovered state needs no writes, so the first save opens a new segment, which fails
+        MovieJournal journal = journal(dir);
+        MovieRepository repository = new MovieRepository(journal);
+        replaceWithFile(dir);
+
+        assertTimeoutPreemptively(WAIT, () ->
+                assertThrows(StorageUnavailableException.class, () -> repository.save(movie("mov-new"))));
+        assertThrows(StorageUnavailableException.class, () -> repository.save(movie("mov-later")));
+        assertTrue(repository.findById("mov-later").isEmpty(), "rejected change was applied");
+        assertEquals(Status.DOWN, journal.health().getStatus());
+    }
+
+    @Test
+    void changesAfterCloseFailInsteadOfWaiting() {
+        MovieJournal journal = journal(root.resolve("data"));
+        MovieRepository repository = new MovieRepository(journal);
+        journal.close();
+
+        assertTimeoutPreemptively(WAIT, () ->
+                assertThrows(StorageUnavailableException.class, () -> repository.save(movie("mov-new"))));
+    }
+
+    @Test
+    void snapshotThresholdReachedWhileSeedingKeepsWriterRunning() throws IOException {
+        Path dir = root.resolve("data");
+        // every batch of the seeding right after start() requests a snapshot
+        MovieJournal journal = new MovieJournal(true, dir.toString(), 4096, 1, 3600);
+        MovieRepository repository = new MovieRepository(journal);
+
+        assertTimeoutPreemptively(WAIT, () -> repository.save(movie("mov-later")));
+        assertEquals(Status.UP, journal.health().getStatus());
+        journal.close();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.anyMatch(f -> f.getFileName().toString().startsWith("snapshot-")));
+        }
+        MovieJournal reopened = journal(dir);
+        assertTrue(new MovieRepository(reopened).findById("mov-later").isPresent());
+        reopened.close();
+    }
+
+    @Test
+    void totalSeatsSurviveRestart() {
+        Path dir = root.resolve("data");
+        MovieJournal journal = journal(dir);
+        MovieRepository repository = new MovieRepository(journal);
+        Session session = repository.findSessionById("sess-1001").orElseThrow();
+        int total = session.getTotalSeats();
+        session.tryReserveSeats(5);
+        repository.recordSeatChange(session);
+        journal.close();
+
+        MovieJournal reopened = journal(dir);
+        Session recovered = new MovieRepository(reopened).findSessionById("sess-1001").orElseThrow();
+        reopened.close();
+
+        assertEquals(total, recovered.getTotalSeats());
+        assertEquals(total - 5, recovered.getAvailableSeats());
+    }
+
+    private static MovieJournal journal(Path dir) {
+        return new MovieJournal(true, dir.toString(), 4096, 100_000, 3600);
+    }
+
+    private static Movie movie(String id) {
+        return new Movie(id, "Title " + id, "Description", 100, List.of("Drama"), 7.5, "12+",
+                "Distributor", "2024-01-01");
+    }
+
+    private static void replaceWithFile(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.createFile(dir);
+    }
+}
@@ -0,0 +1,117 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.model.Movie;
+import com.nure.cinema.movie.model.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Lookups by id and sessions of a movie: the maps and session indexes of {@link MovieRepository}
+ * against the former list scans (the scan* methods, copied from the old repository).
+ *
+ * Every movie has 10 sessions; the journal is disabled.
+ *
+ * mvn -Pbenchmark verify -Dbenchmark="MovieLookupBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class MovieLookupBenchmark {
+
+    private static final int SESSIONS_PER_MOVIE = 10;
+
+    @Param({"1000", "100000", "1000000"})
+    public int sessionCount;
+
+    private MovieRepository repository;
+    private List<Movie> movies;
+    private List<Session> sessions;
+    private int movieCount;
+
+    @Setup
+    public void setUp() {
+        repository = new MovieRepository(new MovieJournal(false, "unused", 1, 1, 1));
+        movieCount = sessionCount / SESSIONS_PER_MOVIE;
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 10, 0);
+        for (int m = 0; m < movieCount; m++) {
+            repository.save(new Movie("bench-movie-" + m, "Movie " + m, "Description " + m, 120,
+                    List.of("Drama"), 7.5, "12+", "Distributor", "2030-01-01"));
+        }
+        for (int s = 0; s < sessionCount; s++) {
+            LocalDateTime startTime = start.plusHours(3L * (s / 100));
+            repository.saveSession(new Session("bench-sess-" + s, "bench-movie-" + (s % movieCount),
+                    "bench-hall-" + (s % 100), startTime, startTime.plusHours(2),
+                    new Session.Price(8.0, "EUR"), 120, "SCHEDULED"));
+        }
+        // the old repository kept both in insertion order
+        movies = new ArrayList<>(repository.findAll());
+        sessions = new ArrayList<>(repository.findAllSessions());
+    }
+
+    @Benchmark
+    public Optional<Movie> findMovieById() {
+        return repository.findById(randomMovieId());
+    }
+
+    @Benchmark
+    public Optional<Movie> scanMovieById() {
+        String id = randomMovieId();
+        return movies.stream()
+                .filter(m -> m.getId().equals(id))
+                .findFirst();
+    }
+
+    @Benchmark
+    public Optional<Session> findSessionById() {
+        return repository.findSessionById(randomSessionId());
+    }
+
+    @Benchmark
+    public Optional<Session> scanSessionById() {
+        String id = randomSessionId();
+        return sessions.stream()
+                .filter(s -> s.getId().equals(id))
+                .findFirst();
+    }
+
+    @Benchmark
+    public List<Session> findSessionsByMovieId() {
+        return repository.findSessionsByMovieId(randomMovieId());
+    }
+
+    @Benchmark
+    public List<Session> scanSessionsByMovieId() {
+        String movieId = randomMovieId();
+        return sessions.stream()
+                .filter(s -> s.getMovieId().equals(movieId))
+                .collect(Collectors.toList());
+    }
+
+    private String randomMovieId() {
+        return "bench-movie-" + ThreadLocalRandom.current().nextInt(movieCount);
+    }
+
+    private String randomSessionId() {
+        return "bench-sess-" + ThreadLocalRandom.current().nextInt(sessionCount);
+    }
+}
@@ -0,0 +1,79 @@
+package com.nure.cinema.movie.repository;
+
+import com.nure.cinema.movie.model.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieRepositoryTest {
+
+    private static final String HALL_ID = "hall-test";
+    private static final LocalDateTime DAY = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    private MovieRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new MovieRepository(new MovieJournal(false, "unused", 1, 1, 1));
+    }
+
+    @Test
+    void findsOverlapBehindEmptySessionWithSameStart() {
+        // ordered by (start, id): C "sess-a" before A "sess-b", so the walk from 13:00 meets A first
+        saveSession("sess-b", 10, 0, 10, 0);
+        saveSession("sess-a", 10, 0, 12, 0);
+
+        Optional<Session> conflict = repository.findOverlappingSession(HALL_ID, at(11, 0), at(13, 0), null);
+
+        assertEquals("sess-a", conflict.map(Session::getId).orElse(null));
+    }
+
+    @Test
+    void findsOverlapBehindEmptySessionInsideIt() {
+        saveSession("sess-1", 9, 0, 12, 0);
+        saveSession("sess-2", 10, 30, 10, 30);
+
+        Optional<Session> conflict = repository.findOverlappingSession(HALL_ID, at(11, 0), at(13, 0), null);
+
+        assertEquals("sess-1", conflict.map(Session::getId).orElse(null));
+    }
+
+    @Test
+    void adjacentSessionsDoNotOverlap() {
+        saveSession("sess-1", 10, 0, 12, 0);
+        saveSession("sess-2", 14, 0, 16, 0);
+
+        assertTrue(repository.findOverlappingSession(HALL_ID, at(12, 0), at(14, 0), null).isEmpty());
+        assertEquals("sess-2", repository.findOverlappingSession(HALL_ID, at(12, 0), at(14, 1), null)
+                .map(Session::getId).orElse(null));
+        assertTrue(repository.findOverlappingSession(HALL_ID, at(10, 0), at(12, 0), "sess-1").isEmpty());
+    }
+
+    @Test
+    void hallSessionsOverlappingIncludesStraddlingSessionBehindEmptyOne() {
+        saveSession("sess-1", 9, 0, 12, 0);
+        saveSession("sess-2", 10, 30, 10, 30);
+        saveSession("sess-3", 13, 0, 15, 0);
+
+        List<String> ids = repository.findHallSessionsOverlapping(HALL_ID, at(11, 0), at(14, 0)).stream()
+                .map(Session::getId)
+                .toList();
+
+        assertEquals(List.of("sess-1", "sess-3"), ids);
+    }
+
+    private void saveSession(String id, int startHour, int startMinute, int endHour, int endMinute) {
+        repository.saveSession(new Session(id, "mov-001", HALL_ID, at(startHour, startMinute),
+                at(endHour, endMinute), new Session.Price(8.0, "EUR"), 100, "Scheduled"));
+    }
+
+    private static LocalDateTime at(int hour, int minute) {
+        return DAY.withHour(hour).withMinute(minute);
+    }
+}
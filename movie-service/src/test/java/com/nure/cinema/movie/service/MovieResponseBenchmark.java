@@ -0,0 +1,73 @@
+package com.nure.cinema.movie.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nure.cinema.movie.cache.ResponseByteCache;
+import com.nure.cinema.movie.repository.MovieJournal;
+import com.nure.cinema.movie.repository.MovieRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single movie and session reads: the pre-serialized bodies of {@link ResponseByteCache}
+ * against building the DTO and serializing it with Jackson on every request, as before the cache.
+ * Run with the GC profiler to see the allocation per read (gc.alloc.rate.norm):
+ *
+ * mvn -Pbenchmark verify -Dbenchmark="MovieResponseBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovieResponseBenchmark {
+
+    private static final String MOVIE_ID = "mov-001";
+    private static final String SESSION_ID = "sess-1001";
+
+    private MovieService movieService;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        // configured like the application's Jackson2ObjectMapperBuilder bean
+        objectMapper = new Jackson2ObjectMapperBuilder()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        MovieRepository movieRepository = new MovieRepository(new MovieJournal(false, "unused", 1, 1, 1));
+        movieService = new MovieService(movieRepository, new ResponseByteCache(10000, objectMapper));
+    }
+
+    @Benchmark
+    public byte[] cachedMovie() {
+        return movieService.getMovieJson(MOVIE_ID);
+    }
+
+    @Benchmark
+    public byte[] serializedMovie() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(movieService.getMovieById(MOVIE_ID));
+    }
+
+    @Benchmark
+    public byte[] cachedSession() {
+        return movieService.getSessionJson(SESSION_ID);
+    }
+
+    @Benchmark
+    public byte[] serializedSession() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(movieService.getSessionById(SESSION_ID));
+    }
+}
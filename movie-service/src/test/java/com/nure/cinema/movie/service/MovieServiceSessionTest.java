@@ -0,0 +1,62 @@
+package com.nure.cinema.movie.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nure.cinema.movie.cache.ResponseByteCache;
+import com.nure.cinema.movie.dto.CreateSessionRequest;
+import com.nure.cinema.movie.dto.UpdateSessionRequest;
+import com.nure.cinema.movie.exception.SeatsUnavailableException;
+import com.nure.cinema.movie.repository.MovieJournal;
+import com.nure.cinema.movie.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieServiceSessionTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    private MovieRepository movieRepository;
+    private MovieService movieService;
+
+    @BeforeEach
+    void setUp() {
+        movieRepository = new MovieRepository(new MovieJournal(false, "unused", 1, 1, 1));
+        movieService = new MovieService(movieRepository,
+                new ResponseByteCache(100, new ObjectMapper()));
+    }
+
+    @Test
+    void createRejectsEmptySession() {
+        CreateSessionRequest request = new CreateSessionRequest();
+        request.setId("sess-empty");
+        request.setMovieId("mov-001");
+        request.setHallId("hall-test");
+        request.setStartTime(START);
+        request.setEndTime(START);
+
+        assertThrows(IllegalArgumentException.class, () -> movieService.createSession(request));
+        assertTrue(movieRepository.findSessionById("sess-empty").isEmpty());
+    }
+
+    @Test
+    void releaseBeyondCapacityIsRejected() {
+        int total = movieRepository.findSessionById("sess-1001").orElseThrow().getTotalSeats();
+        movieService.reserveSeats("sess-1001", 2);
+
+        assertThrows(SeatsUnavailableException.class, () -> movieService.releaseSeats("sess-1001", 3));
+        assertEquals(total, movieService.releaseSeats("sess-1001", 2).getAvailableSeats());
+    }
+
+    @Test
+    void updateRejectsEmptySession() {
+        UpdateSessionRequest request = new UpdateSessionRequest();
+        request.setEndTime(movieRepository.findSessionById("sess-1001").orElseThrow().getStartTime());
+
+        assertThrows(IllegalArgumentException.class, () -> movieService.updateSession("sess-1001", request));
+    }
+}
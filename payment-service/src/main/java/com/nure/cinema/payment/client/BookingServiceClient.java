@@ -1,148 +1,229 @@
 package com.nure.cinema.payment.client;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nure.cinema.payment.dto.BookingConfirmationsDTO;
 import com.nure.cinema.payment.dto.BookingInfoDTO;
 import com.nure.cinema.payment.validation.SchemaValidator;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
- * IPC Client з підтримкою Service Discovery та Client-Side Load Balancing
+ * IPC Client з підтримкою Service Discovery та Client-Side Load Balancing.
+ * Порядок інстансів визначає балансувальник (round-robin, P2C по EWMA-латентності або
+ * least-outstanding); інстанси після послідовних збоїв тимчасово виключаються.
+ * Запити неблокуючі (sendAsync, HTTP/2), кожен виклик має один загальний дедлайн.
  */
 @Component
 public class BookingServiceClient {
 
+    /**
+     * Результат підтвердження: REJECTED означає, що Booking Service відмовив (4xx)
+     * і повтор не допоможе; FAILED - тимчасова помилка, варто повторити
+     */
+    public enum ConfirmationResult {
+        CONFIRMED, REJECTED, FAILED
+    }
+
     private final HttpClient httpClient;
+    private final ThreadPoolExecutor httpExecutor;
     private final ObjectMapper objectMapper;
     private final SchemaValidator schemaValidator;
     private final DiscoveryClient discoveryClient;
     private final String bookingServiceName;
-    private final Random random = new Random();
+    private final Duration deadline;
+    private final InstanceBalancer balancer;
+    private final SingleFlight<String, BookingInfoDTO> bookingFetches = new SingleFlight<>();
 
     public BookingServiceClient(
             @Value("${services.booking.name:booking-service}") String bookingServiceName,
+            @Value("${services.booking.deadline:5s}") Duration deadline,
+            @Value("${services.booking.io-threads:4}") int ioThreads,
+            @Value("${services.booking.io-queue-capacity:1000}") int ioQueueCapacity,
+            @Value("${services.booking.balancer.strategy:p2c-ewma}") String balancerStrategy,
+            @Value("${services.booking.balancer.failure-threshold:5}") int failureThreshold,
+            @Value("${services.booking.balancer.base-ejection:10s}") Duration baseEjection,
+            @Value("${services.booking.balancer.max-ejection:5m}") Duration maxEjection,
             ObjectMapper objectMapper,
             SchemaValidator schemaValidator,
             DiscoveryClient discoveryClient) {
         this.bookingServiceName = bookingServiceName;
+        this.deadline = deadline;
         this.objectMapper = objectMapper;
         this.schemaValidator = schemaValidator;
         this.discoveryClient = discoveryClient;
+        this.balancer = new InstanceBalancer(InstanceBalancer.Strategy.parse(balancerStrategy),
+                failureThreshold, baseEjection, maxEjection);
+        this.httpExecutor = boundedExecutor("booking-client-io", ioThreads, ioQueueCapacity);
         this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .executor(httpExecutor)
                 .connectTimeout(Duration.ofSeconds(5))
                 .build();
     }
 
     /**
-     * Get booking з автоматичним fail-over
+     * Get booking з автоматичним fail-over.
+     * Блокує потік не довше за дедлайн виклику.
      */
     public BookingInfoDTO getBooking(String bookingId) {
-        List<ServiceInstance> instances = discoveryClient.getInstances(bookingServiceName);
-
-        if (instances == null || instances.isEmpty()) {
-            System.err.println("[IPC ERROR] Booking Service not available in Eureka");
+        try {
+            return getBookingAsync(bookingId).join();
+        } catch (CompletionException e) {
+            System.err.println("[IPC ERROR] Booking lookup failed: " + describe(e.getCause()));
             return null;
         }
+    }
 
-        for (ServiceInstance instance : instances) {
-            try {
-                String serviceUrl = instance.getUri().toString() + "/api";
-                System.out.println("[IPC] Trying instance: " + instance.getInstanceId() + " at " + serviceUrl);
-
-                HttpRequest request = HttpRequest.newBuilder()
+    /**
+     * Неблокуюча версія getBooking.
+     * Одночасні запити одного бронювання об'єднуються в один HTTP-запит (single-flight).
+     *
+     * @return future з бронюванням або null, якщо бронювання не існує;
+     * завершується з помилкою, якщо Booking Service недоступний до дедлайну
+     */
+    public CompletableFuture<BookingInfoDTO> getBookingAsync(String bookingId) {
+        return bookingFetches.execute(bookingId, () -> callWithFailover(
+                serviceUrl -> HttpRequest.newBuilder()
                         .uri(URI.create(serviceUrl + "/bookings/" + bookingId))
                         .header("Accept", "application/json")
-                        .timeout(Duration.ofSeconds(5))
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(
-                        request,
-                        HttpResponse.BodyHandlers.ofString()
-                );
-
-                if (response.statusCode() == 200) {
-                    String responseBody = response.body();
-
-                    // JSON Schema validation
-                    boolean isValid = schemaValidator.validate("Booking", responseBody);
-                    if (!isValid) {
-                        System.err.println("[CONTRACT VIOLATION] Invalid Booking from " +
-                                instance.getInstanceId());
-                        continue;
-                    }
+                        .GET(),
+                this::readBooking));
+    }
 
-                    System.out.println("[IPC SUCCESS] Response from " + instance.getInstanceId() +
-                            " validated successfully");
-                    return objectMapper.readValue(responseBody, BookingInfoDTO.class);
+    /**
+     * Confirm booking після успішної оплати
+     */
+    public boolean confirmBooking(String bookingId) {
+        return confirmBookingAsync(bookingId).join();
+    }
 
-                } else if (response.statusCode() == 404) {
-                    System.err.println("[IPC] Booking not found (404) from " + instance.getInstanceId());
-                    return null;
-                }
+    /**
+     * Неблокуюча версія confirmBooking.
+     *
+     * @return future з true, якщо бронювання підтверджено до дедлайну; ніколи не завершується з помилкою
+     */
+    public CompletableFuture<Boolean> confirmBookingAsync(String bookingId) {
+        String jsonBody = "{\"status\": \"CONFIRMED\"}";
 
-            } catch (Exception e) {
-                System.err.println("[IPC FAIL] Instance " + instance.getInstanceId() +
-                        " failed: " + e.getMessage());
-            }
+        return callWithFailover(
+                serviceUrl -> HttpRequest.newBuilder()
+                        .uri(URI.create(serviceUrl + "/bookings/" + bookingId))
+                        .header("Content-Type", "application/json")
+                        .header("Accept", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString(jsonBody)),
+                (instance, response) -> {
+                    if (response.statusCode() != 200) {
+                        throw new UncheckedIOException(new IOException("HTTP " + response.statusCode()));
+                    }
+                    System.out.println("[IPC SUCCESS] Booking " + bookingId +
+                            " confirmed via " + instance.getInstanceId());
+                    return true;
+                })
+                .exceptionally(error -> {
+                    System.err.println("[IPC ERROR] Booking " + bookingId + " not confirmed: " + describe(error));
+                    return false;
+                });
+    }
+
+    /**
+     * Підтвердити кілька бронювань одним запитом POST /bookings/confirmations з fail-over.
+     * Якщо інстанс ще не має bulk-ендпоінту (404/405), бронювання підтверджуються
+     * окремими PUT на ньому ж.
+     *
+     * @return результат для кожного bookingId; ніколи не завершується з помилкою
+     */
+    public CompletableFuture<Map<String, ConfirmationResult>> confirmBookingsAsync(Collection<String> bookingIds) {
+        String jsonBody;
+        try {
+            jsonBody = objectMapper.writeValueAsString(Map.of("bookingIds", bookingIds));
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(allFailed(bookingIds));
         }
+        System.out.println("[IPC] Confirming " + bookingIds.size() + " booking(s) in one request");
 
-        System.err.println("[IPC ERROR] All Booking Service instances failed");
-        return null;
+        return callWithFailover(
+                serviceUrl -> HttpRequest.newBuilder()
+                        .uri(URI.create(serviceUrl + "/bookings/confirmations"))
+                        .header("Content-Type", "application/json")
+                        .header("Accept", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(jsonBody)),
+                (instance, response) -> readConfirmations(instance, response, bookingIds))
+                .thenCompose(results -> results != null ? CompletableFuture.completedFuture(results)
+                        : confirmIndividuallyAsync(bookingIds))
+                .exceptionally(error -> {
+                    System.err.println("[IPC ERROR] " + bookingIds.size() + " booking(s) not confirmed: " +
+                            describe(error));
+                    return allFailed(bookingIds);
+                });
     }
 
     /**
-     * Confirm booking після успішної оплати
+     * Підтвердити бронювання окремими PUT на одному інстансі: запити йдуть одночасно
+     * й мультиплексуються в одному HTTP/2 з'єднанні
      */
-    public boolean confirmBooking(String bookingId) {
+    private CompletableFuture<Map<String, ConfirmationResult>> confirmIndividuallyAsync(Collection<String> bookingIds) {
         List<ServiceInstance> instances = discoveryClient.getInstances(bookingServiceName);
-
         if (instances == null || instances.isEmpty()) {
             System.err.println("[IPC ERROR] Booking Service not available for confirmation");
-            return false;
+            return CompletableFuture.completedFuture(allFailed(bookingIds));
         }
 
-        for (ServiceInstance instance : instances) {
-            try {
-                String serviceUrl = instance.getUri().toString() + "/api";
-                String jsonBody = "{\"status\": \"CONFIRMED\"}";
-
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(serviceUrl + "/bookings/" + bookingId))
-                        .header("Content-Type", "application/json")
-                        .header("Accept", "application/json")
-                        .timeout(Duration.ofSeconds(5))
-                        .PUT(HttpRequest.BodyPublishers.ofString(jsonBody))
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(
-                        request,
-                        HttpResponse.BodyHandlers.ofString()
-                );
+        ServiceInstance instance = balancer.choose(instances);
+        String serviceUrl = instance.getUri().toString() + "/api";
+        System.out.println("[IPC] Bulk confirmation not supported by " + instance.getInstanceId() +
+                ", confirming " + bookingIds.size() + " booking(s) one by one");
 
-                if (response.statusCode() == 200) {
-                    System.out.println("[IPC SUCCESS] Booking " + bookingId +
-                            " confirmed via " + instance.getInstanceId());
-                    return true;
-                }
+        Map<String, CompletableFuture<ConfirmationResult>> pending = new LinkedHashMap<>();
+        for (String bookingId : bookingIds) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(serviceUrl + "/bookings/" + bookingId))
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "application/json")
+                    .timeout(deadline)
+                    .PUT(HttpRequest.BodyPublishers.ofString("{\"status\": \"CONFIRMED\"}"))
+                    .build();
 
-            } catch (Exception e) {
-                System.err.println("[IPC FAIL] Confirmation failed on " +
-                        instance.getInstanceId() + ": " + e.getMessage());
-            }
+            long startedAt = balancer.onStart(instance);
+            pending.put(bookingId, httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .handle((response, error) -> {
+                        ConfirmationResult result = error != null ? ConfirmationResult.FAILED
+                                : confirmationResult(response.statusCode());
+                        // a rejection is a healthy answer, only failures count against the instance
+                        balancer.onComplete(instance, startedAt, result != ConfirmationResult.FAILED);
+                        return result;
+                    }));
         }
 
-        return false;
+        return CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    Map<String, ConfirmationResult> results = new LinkedHashMap<>();
+                    pending.forEach((bookingId, result) -> results.put(bookingId, result.join()));
+                    return results;
+                });
     }
 
     public boolean isBookingValidForPayment(String bookingId) {
@@ -151,9 +232,12 @@ public class BookingServiceClient {
                 ("PENDING".equals(booking.getStatus()) || "CONFIRMED".equals(booking.getStatus()));
     }
 
+    /**
+     * Health check: хоча б один інстанс зареєстрований і не виключений через збої
+     */
     public boolean isServiceHealthy() {
         List<ServiceInstance> instances = discoveryClient.getInstances(bookingServiceName);
-        return instances != null && !instances.isEmpty();
+        return instances != null && balancer.hasAdmittedInstance(instances);
     }
 
     public String getServiceUrl() {
@@ -161,6 +245,167 @@ public class BookingServiceClient {
         if (instances == null || instances.isEmpty()) {
             return "Service not available in discovery";
         }
-        return instances.size() + " instance(s) available";
+        return instances.size() + " instance(s) available (" + balancer.ejectedCount(instances) +
+                " ejected, strategy: " + balancer.getStrategy() + ")";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpExecutor.shutdown();
+    }
+
+    /**
+     * Виконати запит з автоматичним fail-over: інстанси пробуються в порядку балансувальника,
+     * всі спроби разом вкладаються в один дедлайн.
+     *
+     * @param requestFor будує запит для базового URL інстансу (без timeout)
+     * @param reader     читає відповідь; кидає виняток, якщо варто спробувати інший інстанс
+     */
+    private <T> CompletableFuture<T> callWithFailover(Function<String, HttpRequest.Builder> requestFor,
+                                                      BiFunction<ServiceInstance, HttpResponse<String>, T> reader) {
+        List<ServiceInstance> instances = discoveryClient.getInstances(bookingServiceName);
+
+        if (instances == null || instances.isEmpty()) {
+            return CompletableFuture.failedFuture(new IOException("Booking Service not available in Eureka"));
+        }
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        return attempt(balancer.order(instances), 0, deadlineNanos, requestFor, reader)
+                .orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private <T> CompletableFuture<T> attempt(List<ServiceInstance> instances, int index, long deadlineNanos,
+                                             Function<String, HttpRequest.Builder> requestFor,
+                                             BiFunction<ServiceInstance, HttpResponse<String>, T> reader) {
+        if (index >= instances.size()) {
+            return CompletableFuture.failedFuture(new IOException("All Booking Service instances failed"));
+        }
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return CompletableFuture.failedFuture(new TimeoutException("Booking Service deadline exceeded"));
+        }
+
+        ServiceInstance instance = instances.get(index);
+        String serviceUrl = instance.getUri().toString() + "/api";
+        System.out.println("[IPC] Trying instance: " + instance.getInstanceId() + " at " + serviceUrl);
+
+        HttpRequest request = requestFor.apply(serviceUrl)
+                .timeout(Duration.ofNanos(remaining))
+                .build();
+
+        long startedAt = balancer.onStart(instance);
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> reader.apply(instance, response))
+                .whenComplete((result, error) -> balancer.onComplete(instance, startedAt, error == null))
+                .exceptionallyCompose(error -> {
+                    System.err.println("[IPC FAIL] Instance " + instance.getInstanceId() +
+                            " failed: " + describe(error));
+                    return attempt(instances, index + 1, deadlineNanos, requestFor, reader);
+                });
+    }
+
+    /**
+     * @return бронювання або null для 404; кидає виняток, якщо варто спробувати інший інстанс
+     */
+    private BookingInfoDTO readBooking(ServiceInstance instance, HttpResponse<String> response) {
+        if (response.statusCode() == 404) {
+            System.err.println("[IPC] Booking not found (404) from " + instance.getInstanceId());
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new UncheckedIOException(new IOException("HTTP " + response.statusCode()));
+        }
+
+        String responseBody = response.body();
+
+        // JSON Schema validation
+        boolean isValid = schemaValidator.validate("Booking", responseBody);
+        if (!isValid) {
+            System.err.println("[CONTRACT VIOLATION] Invalid Booking from " +
+                    instance.getInstanceId());
+            throw new UncheckedIOException(new IOException("Invalid Booking"));
+        }
+
+        try {
+            BookingInfoDTO booking = objectMapper.readValue(responseBody, BookingInfoDTO.class);
+            System.out.println("[IPC SUCCESS] Response from " + instance.getInstanceId() +
+                    " validated successfully");
+            return booking;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return результат для кожного bookingId або null, якщо інстанс не має bulk-ендпоінту;
+     * кидає виняток, якщо варто спробувати інший інстанс
+     */
+    private Map<String, ConfirmationResult> readConfirmations(ServiceInstance instance,
+                                                              HttpResponse<String> response,
+                                                              Collection<String> bookingIds) {
+        if (response.statusCode() == 404 || response.statusCode() == 405) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new UncheckedIOException(new IOException("HTTP " + response.statusCode()));
+        }
+
+        BookingConfirmationsDTO confirmations;
+        try {
+            confirmations = objectMapper.readValue(response.body(), BookingConfirmationsDTO.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // bookings missing from the response are retried
+        Map<String, ConfirmationResult> results = allFailed(bookingIds);
+        if (confirmations.getResults() != null) {
+            for (BookingConfirmationsDTO.ResultDTO result : confirmations.getResults()) {
+                if (results.containsKey(result.getBookingId())) {
+                    results.put(result.getBookingId(), confirmationResult(result.getStatus()));
+                }
+            }
+        }
+        System.out.println("[IPC SUCCESS] " + confirmations.getConfirmed() + " of " + bookingIds.size() +
+                " booking(s) confirmed via " + instance.getInstanceId());
+        return results;
+    }
+
+    private static Map<String, ConfirmationResult> allFailed(Collection<String> bookingIds) {
+        Map<String, ConfirmationResult> results = new LinkedHashMap<>();
+        bookingIds.forEach(id -> results.put(id, ConfirmationResult.FAILED));
+        return results;
+    }
+
+    private static ConfirmationResult confirmationResult(int statusCode) {
+        if (statusCode == 200) {
+            return ConfirmationResult.CONFIRMED;
+        }
+        if (statusCode == 400 || statusCode == 404) {
+            return ConfirmationResult.REJECTED;
+        }
+        return ConfirmationResult.FAILED;
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Обмежений пул для HttpClient: фіксована кількість потоків і черга,
+     * щоб повільний downstream не породжував нові потоки
+     */
+    private static ThreadPoolExecutor boundedExecutor(String name, int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,243 @@
+package com.nure.cinema.payment.client;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side instance selection with passive outlier ejection.
+ *
+ * Every call reports its outcome and latency. An instance that fails {@code failureThreshold}
+ * times in a row is ejected for {@code baseEjection}, doubling on each repeated ejection up to
+ * {@code maxEjection}; once the time is up it gets traffic again, and a single further failure
+ * ejects it again. A success resets its backoff. If every instance is ejected, all of them are
+ * used anyway rather than failing without trying.
+ */
+class InstanceBalancer {
+
+    enum Strategy {
+        ROUND_ROBIN,
+        /** Power of two choices: the better of two random instances by EWMA latency times load. */
+        P2C_EWMA,
+        LEAST_OUTSTANDING;
+
+        static Strategy parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    // Latency samples older than this weigh in at ~37%
+    private static final double EWMA_DECAY_NANOS = Duration.ofSeconds(10).toNanos();
+
+    private final Strategy strategy;
+    private final int failureThreshold;
+    private final long baseEjectionNanos;
+    private final long maxEjectionNanos;
+
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    InstanceBalancer(Strategy strategy, int failureThreshold, Duration baseEjection, Duration maxEjection) {
+        this.strategy = strategy;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.baseEjectionNanos = baseEjection.toNanos();
+        this.maxEjectionNanos = Math.max(baseEjectionNanos, maxEjection.toNanos());
+    }
+
+    /**
+     * @return instances in the order they should be tried: the strategy's pick first, then
+     * the remaining admitted instances; ejected ones only if nothing else is left
+     */
+    List<ServiceInstance> order(List<ServiceInstance> instances) {
+        prune(instances);
+        long now = System.nanoTime();
+        List<ServiceInstance> candidates = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (!statsFor(instance).isEjected(now)) {
+                candidates.add(instance);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.addAll(instances);
+        }
+        if (candidates.size() <= 1) {
+            return candidates;
+        }
+
+        int first = pick(candidates);
+        List<ServiceInstance> ordered = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            ordered.add(candidates.get((first + i) % candidates.size()));
+        }
+        return ordered;
+    }
+
+    /**
+     * @return the instance to use for a single request, or null if there are none
+     */
+    ServiceInstance choose(List<ServiceInstance> instances) {
+        List<ServiceInstance> ordered = order(instances);
+        return ordered.isEmpty() ? null : ordered.get(0);
+    }
+
+    /**
+     * Marks a request to {@code instance} as started.
+     *
+     * @return start time to pass to {@link #onComplete}
+     */
+    long onStart(ServiceInstance instance) {
+        statsFor(instance).outstanding.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void onComplete(ServiceInstance instance, long startedAt, boolean success) {
+        InstanceStats instanceStats = statsFor(instance);
+        long now = System.nanoTime();
+        instanceStats.outstanding.decrementAndGet();
+        instanceStats.recordLatency(now - startedAt, now);
+        if (success) {
+            instanceStats.recordSuccess();
+        } else if (instanceStats.recordFailure(now)) {
+            System.err.println("[LOAD BALANCING] Ejected instance " + key(instance) + " for " +
+                    Duration.ofNanos(instanceStats.ejectedUntil - now).toMillis() + "ms after " +
+                    failureThreshold + " consecutive failure(s)");
+        }
+    }
+
+    boolean hasAdmittedInstance(List<ServiceInstance> instances) {
+        long now = System.nanoTime();
+        for (ServiceInstance instance : instances) {
+            if (!statsFor(instance).isEjected(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int ejectedCount(List<ServiceInstance> instances) {
+        long now = System.nanoTime();
+        int ejected = 0;
+        for (ServiceInstance instance : instances) {
+            if (statsFor(instance).isEjected(now)) {
+                ejected++;
+            }
+        }
+        return ejected;
+    }
+
+    Strategy getStrategy() {
+        return strategy;
+    }
+
+    private int pick(List<ServiceInstance> candidates) {
+        int size = candidates.size();
+        switch (strategy) {
+            case P2C_EWMA: {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int a = random.nextInt(size);
+                int b = random.nextInt(size - 1);
+                if (b >= a) {
+                    b++;
+                }
+                return statsFor(candidates.get(a)).load() <= statsFor(candidates.get(b)).load() ? a : b;
+            }
+            case LEAST_OUTSTANDING: {
+                // start at a rotating offset so ties are spread instead of always hitting the first
+                int offset = Math.floorMod(nextIndex.getAndIncrement(), size);
+                int best = offset;
+                int bestOutstanding = Integer.MAX_VALUE;
+                for (int i = 0; i < size; i++) {
+                    int index = (offset + i) % size;
+                    int outstanding = statsFor(candidates.get(index)).outstanding.get();
+                    if (outstanding < bestOutstanding) {
+                        best = index;
+                        bestOutstanding = outstanding;
+                    }
+                }
+                return best;
+            }
+            default:
+                return Math.floorMod(nextIndex.getAndIncrement(), size);
+        }
+    }
+
+    private InstanceStats statsFor(ServiceInstance instance) {
+        return stats.computeIfAbsent(key(instance), k -> new InstanceStats());
+    }
+
+    // Drop stats of instances that left the registry, so churn does not grow the map forever
+    private void prune(List<ServiceInstance> instances) {
+        if (stats.size() <= instances.size() * 2 + 16) {
+            return;
+        }
+        Set<String> present = new HashSet<>();
+        for (ServiceInstance instance : instances) {
+            present.add(key(instance));
+        }
+        stats.keySet().retainAll(present);
+    }
+
+    // Instance ids can be null outside Eureka; the URI always identifies the instance
+    private static String key(ServiceInstance instance) {
+        return instance.getUri().toString();
+    }
+
+    private final class InstanceStats {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong lastSampleAt = new AtomicLong(System.nanoTime());
+        private volatile double ewmaNanos;
+
+        private int consecutiveFailures;
+        private int ejections;
+        private volatile long ejectedUntil;
+
+        boolean isEjected(long now) {
+            return ejectedUntil - now > 0;
+        }
+
+        // Slow instances and busy instances both look expensive
+        double load() {
+            return ewmaNanos * (outstanding.get() + 1);
+        }
+
+        // Unsynchronized: a lost update under contention only skews the average slightly
+        void recordLatency(long latencyNanos, long now) {
+            long elapsed = Math.max(0, now - lastSampleAt.getAndSet(now));
+            double weight = Math.exp(-elapsed / EWMA_DECAY_NANOS);
+            ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            ejections = 0;
+        }
+
+        /**
+         * @return true if this failure ejected the instance
+         */
+        synchronized boolean recordFailure(long now) {
+            if (isEjected(now)) {
+                return false;
+            }
+            if (++consecutiveFailures < failureThreshold) {
+                return false;
+            }
+            long backoff = baseEjectionNanos << Math.min(ejections, 20);
+            ejectedUntil = now + Math.min(backoff > 0 ? backoff : maxEjectionNanos, maxEjectionNanos);
+            ejections++;
+            // on probation after re-admission: the next failure ejects again
+            consecutiveFailures = failureThreshold - 1;
+            return true;
+        }
+    }
+}
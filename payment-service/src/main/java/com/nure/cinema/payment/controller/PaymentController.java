@@ -64,14 +64,20 @@ public class PaymentController {
 
     @PostMapping
     @Operation(summary = "Create new payment",
-            description = "Initiates a new payment for a booking")
+            description = "Initiates a new payment for a booking. Retries carrying the same Idempotency-Key " +
+                    "header return the first request's result instead of creating another payment")
     @ApiResponses({
             @ApiResponse(responseCode = "201", description = "Payment created successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid request data"),
-            @ApiResponse(responseCode = "409", description = "Payment already exists for this booking")
+            @ApiResponse(responseCode = "409", description = "Payment already exists for this booking, or the " +
+                    "request with the same Idempotency-Key is still in progress"),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key already used for a different request"),
+            @ApiResponse(responseCode = "429", description = "Payment queue is full, retry later")
     })
-    public ResponseEntity<PaymentDTO> createPayment(@RequestBody CreatePaymentRequest request) {
-        PaymentDTO createdPayment = paymentService.createPayment(request);
+    public ResponseEntity<PaymentDTO> createPayment(
+            @RequestBody CreatePaymentRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        PaymentDTO createdPayment = paymentService.createPayment(request, idempotencyKey);
         return ResponseEntity.status(HttpStatus.CREATED).body(createdPayment);
     }
 
@@ -129,6 +135,31 @@ public class PaymentController {
         return ResponseEntity.status(status).body(health);
     }
 
+    @GetMapping("/outbox/stuck")
+    @Operation(summary = "Get stuck booking confirmations",
+            description = "Returns booking confirmations of completed payments that Booking Service rejected " +
+                    "or that still fail after repeated retries")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Stuck confirmations retrieved")
+    })
+    public ResponseEntity<List<OutboxEntryDTO>> getStuckConfirmations() {
+        return ResponseEntity.ok(paymentService.getStuckConfirmations());
+    }
+
+    @DeleteMapping("/outbox/stuck/{paymentId}/{bookingId}")
+    @Operation(summary = "Discard a rejected booking confirmation",
+            description = "Removes a confirmation that Booking Service rejected, once the booking has been " +
+                    "resolved manually. Confirmations that are still being retried cannot be discarded")
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Confirmation discarded"),
+            @ApiResponse(responseCode = "404", description = "No rejected confirmation for this payment and booking")
+    })
+    public ResponseEntity<Void> discardParkedConfirmation(@PathVariable String paymentId,
+                                                          @PathVariable String bookingId) {
+        paymentService.discardParkedConfirmation(paymentId, bookingId);
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/debug/booking-service")
     @Operation(summary = "Get Booking Service connection info",
             description = "Returns detailed information about Booking Service connection for debugging")
@@ -0,0 +1,38 @@
+package com.nure.cinema.payment.dto;
+
+import java.util.List;
+
+/**
+ * DTO for inter-service communication
+ * Represents the response of POST /api/bookings/confirmations from Booking Service
+ */
+public class BookingConfirmationsDTO {
+    private int confirmed;
+    private int failed;
+    private List<ResultDTO> results;
+
+    // Getters and Setters
+    public int getConfirmed() { return confirmed; }
+    public void setConfirmed(int confirmed) { this.confirmed = confirmed; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public List<ResultDTO> getResults() { return results; }
+    public void setResults(List<ResultDTO> results) { this.results = results; }
+
+    public static class ResultDTO {
+        private String bookingId;
+        private int status;
+        private String message;
+
+        public String getBookingId() { return bookingId; }
+        public void setBookingId(String bookingId) { this.bookingId = bookingId; }
+
+        public int getStatus() { return status; }
+        public void setStatus(int status) { this.status = status; }
+
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+    }
+}
@@ -0,0 +1,35 @@
+package com.nure.cinema.payment.dto;
+
+import java.time.LocalDateTime;
+
+public class OutboxEntryDTO {
+    private String paymentId;
+    private String bookingId;
+    private LocalDateTime enqueuedAt;
+    private int attempts;
+    private LocalDateTime nextAttemptAt;
+    private String lastError;
+    private boolean parked;
+
+    // Getters and Setters
+    public String getPaymentId() { return paymentId; }
+    public void setPaymentId(String paymentId) { this.paymentId = paymentId; }
+
+    public String getBookingId() { return bookingId; }
+    public void setBookingId(String bookingId) { this.bookingId = bookingId; }
+
+    public LocalDateTime getEnqueuedAt() { return enqueuedAt; }
+    public void setEnqueuedAt(LocalDateTime enqueuedAt) { this.enqueuedAt = enqueuedAt; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public boolean isParked() { return parked; }
+    public void setParked(boolean parked) { this.parked = parked; }
+}
@@ -0,0 +1,7 @@
+package com.nure.cinema.payment.exception;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    public IdempotencyKeyInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.nure.cinema.payment.exception;
+
+public class OutboxEntryNotFoundException extends RuntimeException {
+    public OutboxEntryNotFoundException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
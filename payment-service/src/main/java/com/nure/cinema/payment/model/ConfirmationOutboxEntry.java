@@ -0,0 +1,50 @@
+package com.nure.cinema.payment.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A booking confirmation owed to Booking Service for a completed payment, with its delivery
+ * state. Changed only through {@code ConfirmationOutbox}, which persists it.
+ */
+public class ConfirmationOutboxEntry {
+    private String paymentId;
+    private String bookingId;
+    private LocalDateTime enqueuedAt;
+
+    private volatile int attempts;
+    private volatile LocalDateTime nextAttemptAt;
+    private volatile String lastError;
+    // Booking Service rejected the confirmation (e.g. booking cancelled); retrying will not help
+    private volatile boolean parked;
+
+    public ConfirmationOutboxEntry() {}
+
+    public ConfirmationOutboxEntry(String paymentId, String bookingId, LocalDateTime enqueuedAt) {
+        this.paymentId = paymentId;
+        this.bookingId = bookingId;
+        this.enqueuedAt = enqueuedAt;
+        this.nextAttemptAt = enqueuedAt;
+    }
+
+    // Getters and Setters
+    public String getPaymentId() { return paymentId; }
+    public void setPaymentId(String paymentId) { this.paymentId = paymentId; }
+
+    public String getBookingId() { return bookingId; }
+    public void setBookingId(String bookingId) { this.bookingId = bookingId; }
+
+    public LocalDateTime getEnqueuedAt() { return enqueuedAt; }
+    public void setEnqueuedAt(LocalDateTime enqueuedAt) { this.enqueuedAt = enqueuedAt; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public boolean isParked() { return parked; }
+    public void setParked(boolean parked) { this.parked = parked; }
+}
@@ -0,0 +1,452 @@
+package com.nure.cinema.payment.repository;
+
+import com.nure.cinema.payment.model.ConfirmationOutboxEntry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/**
+ * Pending booking confirmations, kept in memory and in an append-only file.
+ *
+ * Every {@link #enqueue} appends a record and fsyncs before returning, so a confirmation owed
+ * for a completed payment survives a crash. {@link #acknowledge} appends without fsync: if the
+ * acknowledgement is lost the confirmation is simply sent again, which Booking Service accepts.
+ * Failed attempts ({@link #recordAttempt}) and rejections ({@link #park}) are appended without
+ * fsync too, so backoff and parked entries survive a restart; losing the last of them only
+ * brings a retry forward. Parked entries stay until an operator discards them ({@link #discardParked}).
+ * Records are framed as length, CRC32 and body; a torn tail left by a crash is cut off on
+ * startup. Once most records in the file are acknowledged, the live entries are rewritten to a
+ * new file that atomically replaces the old one. A failed compaction only leaves the old file in
+ * place; it never fails the acknowledgement that triggered it.
+ */
+@Component
+public class ConfirmationOutbox {
+
+    private static final byte ENQUEUE = 1;
+    private static final byte ACKNOWLEDGE = 2;
+    private static final byte ATTEMPT = 3;
+    private static final byte PARK = 4;
+    private static final String FILE_NAME = "confirmation-outbox.log";
+    private static final long COMPACT_MIN_RECORDS = 1024;
+
+    private final Path file;
+    private final Map<String, ConfirmationOutboxEntry> entries = new ConcurrentHashMap<>();
+    // parked entries among entries (written under the outbox lock)
+    private volatile int parkedCount;
+    // entries that are not parked, by next attempt, so finding due ones does not scan the backlog
+    private final ConcurrentSkipListMap<DueKey, ConfirmationOutboxEntry> due = new ConcurrentSkipListMap<>();
+    private FileChannel channel;
+    private long recordsInFile;
+    // after a failed compaction the next try waits for this many records in the file
+    private long compactAfterRecords = COMPACT_MIN_RECORDS;
+
+    public ConfirmationOutbox(@Value("${payment.outbox.dir:data/payment-service}") String dir) {
+        this.file = Paths.get(dir).resolve(FILE_NAME);
+        try {
+            Files.createDirectories(file.getParent());
+            recover();
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open confirmation outbox " + file, e);
+        }
+        if (!entries.isEmpty()) {
+            System.out.println("[OUTBOX] Recovered " + entries.size() + " pending booking confirmation(s)");
+        }
+    }
+
+    /**
+     * Durably records that {@code bookingId} must be confirmed for {@code paymentId}.
+     */
+    public synchronized ConfirmationOutboxEntry enqueue(String paymentId, String bookingId) {
+        // Payment IDs restart after a restart while the outbox does not, so the booking is part of the key
+        String key = key(paymentId, bookingId);
+        ConfirmationOutboxEntry existing = entries.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        ConfirmationOutboxEntry entry = new ConfirmationOutboxEntry(paymentId, bookingId, LocalDateTime.now());
+        append(encode(ENQUEUE, entry), true);
+        entries.put(key, entry);
+        schedule(entry);
+        return entry;
+    }
+
+    public synchronized void acknowledge(ConfirmationOutboxEntry entry) {
+        if (remove(key(entry.getPaymentId(), entry.getBookingId())) == null) {
+            return;
+        }
+        // if this is lost, the entry comes back after a restart and is confirmed again, which is harmless
+        appendQuietly(encode(ACKNOWLEDGE, entry));
+    }
+
+    /**
+     * Records a failed delivery: the entry is retried at {@code nextAttemptAt}.
+     */
+    public synchronized void recordAttempt(ConfirmationOutboxEntry entry, int attempts, LocalDateTime nextAttemptAt,
+                                           String error) {
+        boolean live = entries.containsKey(key(entry.getPaymentId(), entry.getBookingId()));
+        if (live) {
+            unschedule(entry);
+        }
+        entry.setAttempts(attempts);
+        entry.setNextAttemptAt(nextAttemptAt);
+        entry.setLastError(error);
+        if (live) {
+            schedule(entry);
+            appendQuietly(encode(ATTEMPT, entry));
+        }
+    }
+
+    /**
+     * Records that Booking Service rejected the confirmation; the entry is not retried any more.
+     */
+    public synchronized void park(ConfirmationOutboxEntry entry, int attempts, String error) {
+        entry.setAttempts(attempts);
+        entry.setLastError(error);
+        if (entries.containsKey(key(entry.getPaymentId(), entry.getBookingId()))) {
+            unschedule(entry);
+            setParked(entry, true);
+            appendQuietly(encode(PARK, entry));
+        } else {
+            entry.setParked(true);
+        }
+    }
+
+    /**
+     * Durably removes a parked entry once an operator has dealt with the booking by hand.
+     *
+     * @return the removed entry, or empty if there is no parked entry for the payment and booking
+     */
+    public synchronized Optional<ConfirmationOutboxEntry> discardParked(String paymentId, String bookingId) {
+        String key = key(paymentId, bookingId);
+        ConfirmationOutboxEntry entry = entries.get(key);
+        if (entry == null || !entry.isParked()) {
+            return Optional.empty();
+        }
+        append(encode(ACKNOWLEDGE, entry), true);
+        remove(key);
+        return Optional.of(entry);
+    }
+
+    /**
+     * @return pending entries, oldest first
+     */
+    public List<ConfirmationOutboxEntry> findAll() {
+        List<ConfirmationOutboxEntry> result = new ArrayList<>(entries.values());
+        result.sort(Comparator.comparing(ConfirmationOutboxEntry::getEnqueuedAt));
+        return result;
+    }
+
+    /**
+     * @return up to {@code limit} entries that are not parked and due at {@code now}, earliest first
+     */
+    public List<ConfirmationOutboxEntry> findDue(LocalDateTime now, int limit) {
+        List<ConfirmationOutboxEntry> result = new ArrayList<>();
+        for (ConfirmationOutboxEntry entry : due.headMap(new DueKey(toMillis(now) + 1, ""), false).values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return entries still to be delivered, i.e. not parked
+     */
+    public int pendingCount() {
+        return entries.size() - parkedCount;
+    }
+
+    public int parkedCount() {
+        return parkedCount;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("[OUTBOX] Close failed: " + e.getMessage());
+        }
+    }
+
+    // For records whose loss is harmless; compacts once most of the file is obsolete
+    private void appendQuietly(byte[] frame) {
+        try {
+            append(frame, false);
+        } catch (UncheckedIOException e) {
+            System.err.println("[OUTBOX] " + e.getMessage() + ": " + e.getCause().getMessage());
+            return;
+        }
+        if (recordsInFile > compactAfterRecords && recordsInFile > 4L * entries.size()) {
+            compact();
+        }
+    }
+
+    private void append(byte[] frame, boolean sync) {
+        try {
+            write(channel, frame);
+            if (sync) {
+                channel.force(false);
+            }
+            recordsInFile++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write confirmation outbox " + file, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long validLength = 0;
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > 64 * 1024) {
+                    break;
+                }
+                int crc = in.readInt();
+                byte[] body = new byte[length];
+                try {
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (crc(body) != crc) {
+                    break;
+                }
+                apply(body);
+                validLength += 8 + length;
+                recordsInFile++;
+            }
+        } catch (EOFException e) {
+            // torn length or crc at the tail
+        }
+
+        if (validLength < Files.size(file)) {
+            System.err.println("[OUTBOX] Discarding torn tail of " + file + " after byte " + validLength);
+            try (FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncate.truncate(validLength);
+                truncate.force(true);
+            }
+        }
+    }
+
+    private void apply(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        String paymentId = in.readUTF();
+        String bookingId = in.readUTF();
+        String key = key(paymentId, bookingId);
+        if (type == ENQUEUE) {
+            LocalDateTime enqueuedAt = fromMillis(in.readLong());
+            remove(key);
+            ConfirmationOutboxEntry entry = new ConfirmationOutboxEntry(paymentId, bookingId, enqueuedAt);
+            entries.put(key, entry);
+            schedule(entry);
+        } else if (type == ACKNOWLEDGE) {
+            remove(key);
+        } else if (type == ATTEMPT || type == PARK) {
+            int attempts = in.readInt();
+            long nextAttemptAt = in.readLong();
+            String error = in.readUTF();
+            ConfirmationOutboxEntry entry = entries.get(key);
+            if (entry != null) {
+                unschedule(entry);
+                entry.setAttempts(attempts);
+                entry.setNextAttemptAt(fromMillis(nextAttemptAt));
+                entry.setLastError(error);
+                setParked(entry, type == PARK);
+                schedule(entry);
+            }
+        }
+    }
+
+    /**
+     * Rewrites only the live entries. The old file and channel stay in use until the new file has
+     * atomically replaced it; the open channel follows the renamed file. On failure the outbox
+     * keeps appending to the old file and compaction is retried once another
+     * {@value #COMPACT_MIN_RECORDS} records have been written.
+     */
+    private void compact() {
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        FileChannel compacted = null;
+        long records;
+        try {
+            compacted = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            records = 0;
+            for (ConfirmationOutboxEntry entry : entries.values()) {
+                write(compacted, encode(ENQUEUE, entry));
+                records++;
+                if (entry.isParked() || entry.getAttempts() > 0) {
+                    write(compacted, encode(entry.isParked() ? PARK : ATTEMPT, entry));
+                    records++;
+                }
+            }
+            compacted.force(true);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("[OUTBOX] Cannot compact " + file + ", keeping the current file: " + e.getMessage());
+            closeQuietly(compacted);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // overwritten by the next compaction
+            }
+            compactAfterRecords = recordsInFile + COMPACT_MIN_RECORDS;
+            return;
+        }
+
+        closeQuietly(channel);
+        channel = compacted;
+        recordsInFile = records;
+        compactAfterRecords = COMPACT_MIN_RECORDS;
+    }
+
+    private ConfirmationOutboxEntry remove(String key) {
+        ConfirmationOutboxEntry removed = entries.remove(key);
+        if (removed != null) {
+            unschedule(removed);
+            if (removed.isParked()) {
+                parkedCount--;
+            }
+        }
+        return removed;
+    }
+
+    private void schedule(ConfirmationOutboxEntry entry) {
+        if (!entry.isParked()) {
+            due.put(DueKey.of(entry), entry);
+        }
+    }
+
+    // must run before nextAttemptAt changes, since the key is derived from it
+    private void unschedule(ConfirmationOutboxEntry entry) {
+        due.remove(DueKey.of(entry));
+    }
+
+    private void setParked(ConfirmationOutboxEntry entry, boolean parked) {
+        if (entry.isParked() != parked) {
+            parkedCount += parked ? 1 : -1;
+            entry.setParked(parked);
+        }
+    }
+
+    private static void write(FileChannel channel, byte[] frame) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("[OUTBOX] Close failed: " + e.getMessage());
+        }
+    }
+
+    private static byte[] encode(byte type, ConfirmationOutboxEntry entry) {
+        try {
+            ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(64);
+            DataOutputStream body = new DataOutputStream(bodyBytes);
+            body.writeByte(type);
+            body.writeUTF(entry.getPaymentId());
+            body.writeUTF(entry.getBookingId());
+            if (type == ENQUEUE) {
+                body.writeLong(toMillis(entry.getEnqueuedAt()));
+            } else if (type == ATTEMPT || type == PARK) {
+                body.writeInt(entry.getAttempts());
+                body.writeLong(toMillis(entry.getNextAttemptAt()));
+                body.writeUTF(entry.getLastError() != null ? entry.getLastError() : "");
+            }
+            byte[] payload = bodyBytes.toByteArray();
+
+            ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+            frame.putInt(payload.length);
+            frame.putInt(crc(payload));
+            frame.put(payload);
+            return frame.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record DueKey(long dueAtMillis, String key) implements Comparable<DueKey> {
+        static DueKey of(ConfirmationOutboxEntry entry) {
+            return new DueKey(toMillis(entry.getNextAttemptAt()), ConfirmationOutbox.key(entry.getPaymentId(),
+                    entry.getBookingId()));
+        }
+
+        @Override
+        public int compareTo(DueKey other) {
+            int byTime = Long.compare(dueAtMillis, other.dueAtMillis);
+            return byTime != 0 ? byTime : key.compareTo(other.key);
+        }
+    }
+
+    private static String key(String paymentId, String bookingId) {
+        return paymentId + ':' + bookingId;
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
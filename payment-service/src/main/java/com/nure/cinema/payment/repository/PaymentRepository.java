@@ -6,21 +6,42 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
 
 @Repository
 public class PaymentRepository {
 
-    private final List<Payment> payments = new ArrayList<>();
+    // Creation order of payment ids: "pay-9999" before "pay-10000"
+    private static final Comparator<String> ID_ORDER =
+            Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    // Concurrent primary map keyed by id, iterated in creation order
+    private final Map<String, Payment> payments = new ConcurrentSkipListMap<>(ID_ORDER);
+
+    // Secondary indexes: bookingId -> paymentIds, status -> paymentIds, method -> paymentIds,
+    // and bookingId + status -> paymentIds for the duplicate-payment check
+    private final Map<String, Set<String>> paymentsByBooking = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> paymentsByStatus = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> paymentsByMethod = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> paymentsByBookingAndStatus = new ConcurrentHashMap<>();
+
+    // Index keys each payment was last indexed under (payments are mutated in place before save)
+    private final Map<String, PaymentKeys> indexedKeys = new ConcurrentHashMap<>();
 
     public PaymentRepository() {
         initializeData();
     }
 
     private void initializeData() {
-        payments.add(new Payment(
+        save(new Payment(
                 "pay-5001",
                 "bk-1001",
                 new Amount(21.0, "EUR"),
@@ -33,51 +54,128 @@ public class PaymentRepository {
     }
 
     public List<Payment> findAll() {
-        return new ArrayList<>(payments);
+        return new ArrayList<>(payments.values());
     }
 
     public Optional<Payment> findById(String id) {
-        return payments.stream()
-                .filter(p -> p.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(payments.get(id));
     }
 
+    /**
+     * @return the oldest payment of the booking
+     */
     public Optional<Payment> findByBookingId(String bookingId) {
-        return payments.stream()
-                .filter(p -> p.getBookingId().equals(bookingId))
+        return resolve(paymentsByBooking.get(bookingId), p -> bookingId.equals(p.getBookingId()))
+                .stream()
                 .findFirst();
     }
 
     public List<Payment> findByStatus(String status) {
-        return payments.stream()
-                .filter(p -> p.getStatus().equals(status))
-                .collect(Collectors.toList());
+        return resolve(paymentsByStatus.get(status), p -> status.equals(p.getStatus()));
     }
 
     public List<Payment> findByMethod(String method) {
-        return payments.stream()
-                .filter(p -> p.getMethod().equals(method))
-                .collect(Collectors.toList());
+        return resolve(paymentsByMethod.get(method), p -> method.equals(p.getMethod()));
     }
 
     public Payment save(Payment payment) {
-        payments.removeIf(p -> p.getId().equals(payment.getId()));
-        payments.add(payment);
+        payments.put(payment.getId(), payment);
+        reindex(payment);
         return payment;
     }
 
     public void deleteById(String id) {
-        payments.removeIf(p -> p.getId().equals(id));
+        payments.remove(id);
+        PaymentKeys keys = indexedKeys.remove(id);
+        if (keys != null) {
+            unindex(id, keys);
+        }
     }
 
     public boolean existsByBookingId(String bookingId) {
-        return payments.stream()
-                .anyMatch(p -> p.getBookingId().equals(bookingId));
+        return paymentsByBooking.containsKey(bookingId);
     }
 
     public boolean existsCompletedPaymentForBooking(String bookingId) {
-        return payments.stream()
-                .anyMatch(p -> p.getBookingId().equals(bookingId) &&
-                        "COMPLETED".equals(p.getStatus()));
+        return paymentsByBookingAndStatus.containsKey(bookingAndStatus(bookingId, "COMPLETED"));
+    }
+
+    private void reindex(Payment payment) {
+        PaymentKeys current = new PaymentKeys(payment.getBookingId(), payment.getStatus(), payment.getMethod());
+        PaymentKeys previous = indexedKeys.put(payment.getId(), current);
+        if (current.equals(previous)) {
+            return;
+        }
+        // Add before removing so a concurrent reader never misses the payment entirely
+        addToIndex(paymentsByBooking, current.bookingId(), payment.getId());
+        addToIndex(paymentsByStatus, current.status(), payment.getId());
+        addToIndex(paymentsByMethod, current.method(), payment.getId());
+        addToIndex(paymentsByBookingAndStatus, current.bookingAndStatus(), payment.getId());
+        if (previous != null) {
+            if (!Objects.equals(previous.bookingId(), current.bookingId())) {
+                removeFromIndex(paymentsByBooking, previous.bookingId(), payment.getId());
+            }
+            if (!Objects.equals(previous.status(), current.status())) {
+                removeFromIndex(paymentsByStatus, previous.status(), payment.getId());
+            }
+            if (!Objects.equals(previous.method(), current.method())) {
+                removeFromIndex(paymentsByMethod, previous.method(), payment.getId());
+            }
+            if (!Objects.equals(previous.bookingAndStatus(), current.bookingAndStatus())) {
+                removeFromIndex(paymentsByBookingAndStatus, previous.bookingAndStatus(), payment.getId());
+            }
+        }
+    }
+
+    private void unindex(String id, PaymentKeys keys) {
+        removeFromIndex(paymentsByBooking, keys.bookingId(), id);
+        removeFromIndex(paymentsByStatus, keys.status(), id);
+        removeFromIndex(paymentsByMethod, keys.method(), id);
+        removeFromIndex(paymentsByBookingAndStatus, keys.bookingAndStatus(), id);
+    }
+
+    /**
+     * Looks up indexed ids in the primary map, in creation order. {@code stillMatches}
+     * re-checks the live payment, which may already be mutated ahead of its save.
+     */
+    private List<Payment> resolve(Set<String> ids, Predicate<Payment> stillMatches) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> ordered = new ArrayList<>(ids);
+        ordered.sort(ID_ORDER);
+        List<Payment> result = new ArrayList<>(ordered.size());
+        for (String id : ordered) {
+            Payment payment = payments.get(id);
+            if (payment != null && stillMatches.test(payment)) {
+                result.add(payment);
+            }
+        }
+        return result;
+    }
+
+    private static void addToIndex(Map<String, Set<String>> index, String key, String id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    private static void removeFromIndex(Map<String, Set<String>> index, String key, String id) {
+        if (key != null) {
+            index.computeIfPresent(key, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private static String bookingAndStatus(String bookingId, String status) {
+        return bookingId == null || status == null ? null : bookingId + ':' + status;
+    }
+
+    private record PaymentKeys(String bookingId, String status, String method) {
+        String bookingAndStatus() {
+            return PaymentRepository.bookingAndStatus(bookingId, status);
+        }
     }
-}
\ No newline at end of file
+}
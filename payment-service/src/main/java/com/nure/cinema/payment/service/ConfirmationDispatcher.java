@@ -0,0 +1,197 @@
+package com.nure.cinema.payment.service;
+
+import com.nure.cinema.payment.client.BookingServiceClient;
+import com.nure.cinema.payment.client.BookingServiceClient.ConfirmationResult;
+import com.nure.cinema.payment.model.ConfirmationOutboxEntry;
+import com.nure.cinema.payment.repository.ConfirmationOutbox;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers booking confirmations from the {@link ConfirmationOutbox} to Booking Service.
+ *
+ * A single dispatcher thread picks up due entries every {@code poll-interval} and sends them in
+ * batches of up to {@code batch-size}, one bulk request per batch. New entries are micro-batched:
+ * they are flushed {@code batch-window} after the first of them, or as soon as
+ * {@code batch-size} of them are waiting. A confirmed entry is removed from the outbox. A failed one is retried with
+ * exponential backoff and jitter, so a recovering Booking Service is not hit by every entry at
+ * once. An entry Booking Service rejects (booking cancelled, expired or deleted) is parked: it
+ * only shows up as stuck until an operator discards it.
+ */
+@Component
+public class ConfirmationDispatcher {
+
+    private final ConfirmationOutbox outbox;
+    private final BookingServiceClient bookingServiceClient;
+    private final int batchSize;
+    private final long batchWindowMillis;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int stuckAfterAttempts;
+    private final ScheduledExecutorService ticker;
+
+    // entries submitted since the last flush, and whether a flush is already scheduled for them
+    private final AtomicInteger submitted = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public ConfirmationDispatcher(ConfirmationOutbox outbox,
+                                  BookingServiceClient bookingServiceClient,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${payment.outbox.poll-interval:1s}") Duration pollInterval,
+                                  @Value("${payment.outbox.batch-size:50}") int batchSize,
+                                  @Value("${payment.outbox.batch-window:20ms}") Duration batchWindow,
+                                  @Value("${payment.outbox.base-backoff:1s}") Duration baseBackoff,
+                                  @Value("${payment.outbox.max-backoff:5m}") Duration maxBackoff,
+                                  @Value("${payment.outbox.stuck-after-attempts:5}") int stuckAfterAttempts) {
+        this.outbox = outbox;
+        this.bookingServiceClient = bookingServiceClient;
+        this.batchSize = batchSize;
+        this.batchWindowMillis = batchWindow.toMillis();
+        this.baseBackoffMillis = Math.max(1, baseBackoff.toMillis());
+        this.maxBackoffMillis = Math.max(baseBackoffMillis, maxBackoff.toMillis());
+        this.stuckAfterAttempts = stuckAfterAttempts;
+
+        Gauge.builder("payments.outbox.pending", outbox, ConfirmationOutbox::pendingCount)
+                .description("Booking confirmations not yet delivered, without parked ones")
+                .register(meterRegistry);
+        Gauge.builder("payments.outbox.parked", outbox, ConfirmationOutbox::parkedCount)
+                .description("Booking confirmations rejected by Booking Service, waiting for an operator")
+                .register(meterRegistry);
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "confirmation-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::dispatch, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Durably queues the confirmation of {@code bookingId}; it is sent with the next batch.
+     */
+    public void submit(String paymentId, String bookingId) {
+        outbox.enqueue(paymentId, bookingId);
+        try {
+            if (submitted.incrementAndGet() == batchSize) {
+                ticker.execute(this::flush);
+            } else if (flushScheduled.compareAndSet(false, true)) {
+                ticker.schedule(this::flush, batchWindowMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            // shutting down: the entry is in the outbox and is delivered after the restart
+        }
+    }
+
+    /**
+     * @return entries that were rejected or have failed at least {@code stuck-after-attempts} times
+     */
+    public List<ConfirmationOutboxEntry> findStuck() {
+        return outbox.findAll().stream()
+                .filter(e -> e.isParked() || e.getAttempts() >= stuckAfterAttempts)
+                .toList();
+    }
+
+    /**
+     * Drops a parked entry after the booking was resolved by hand.
+     *
+     * @return false if there is no parked entry for the payment and booking
+     */
+    public boolean discardParked(String paymentId, String bookingId) {
+        return outbox.discardParked(paymentId, bookingId).isPresent();
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdown();
+        try {
+            ticker.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush() {
+        submitted.set(0);
+        flushScheduled.set(false);
+        dispatch();
+    }
+
+    private void dispatch() {
+        try {
+            while (true) {
+                List<ConfirmationOutboxEntry> due = outbox.findDue(LocalDateTime.now(), batchSize);
+                if (due.isEmpty()) {
+                    return;
+                }
+                deliver(due);
+                if (due.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            // keep the schedule alive; entries stay in the outbox
+            System.err.println("[OUTBOX] Dispatch failed: " + e.getMessage());
+        }
+    }
+
+    private void deliver(List<ConfirmationOutboxEntry> due) {
+        // Several payments of one booking need only one confirmation
+        Map<String, List<ConfirmationOutboxEntry>> byBooking = new LinkedHashMap<>();
+        for (ConfirmationOutboxEntry entry : due) {
+            byBooking.computeIfAbsent(entry.getBookingId(), id -> new ArrayList<>()).add(entry);
+        }
+
+        Map<String, ConfirmationResult> results =
+                bookingServiceClient.confirmBookingsAsync(byBooking.keySet()).join();
+
+        byBooking.forEach((bookingId, entries) -> {
+            ConfirmationResult result = results.getOrDefault(bookingId, ConfirmationResult.FAILED);
+            for (ConfirmationOutboxEntry entry : entries) {
+                switch (result) {
+                    case CONFIRMED -> {
+                        outbox.acknowledge(entry);
+                        System.out.println("[IPC SUCCESS] Booking " + bookingId +
+                                " confirmed in Booking Service after payment " + entry.getPaymentId());
+                    }
+                    case REJECTED -> {
+                        outbox.park(entry, entry.getAttempts() + 1, "Rejected by Booking Service");
+                        System.err.println("[IPC WARNING] Booking Service rejected confirmation of booking " +
+                                bookingId + " after payment " + entry.getPaymentId() +
+                                ". Manual intervention may be required.");
+                    }
+                    case FAILED -> scheduleRetry(entry);
+                }
+            }
+        });
+    }
+
+    private void scheduleRetry(ConfirmationOutboxEntry entry) {
+        int attempts = entry.getAttempts() + 1;
+        long backoff = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempts - 1, 20));
+        // equal jitter: at least half the backoff, spread over the other half
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+
+        outbox.recordAttempt(entry, attempts, LocalDateTime.now().plus(Duration.ofMillis(delay)),
+                "Booking Service unavailable");
+        System.err.println("[OUTBOX] Confirmation of booking " + entry.getBookingId() + " failed (attempt " +
+                attempts + "), retrying in " + delay + "ms");
+    }
+}
@@ -0,0 +1,133 @@
+package com.nure.cinema.payment.service;
+
+import com.nure.cinema.payment.dto.PaymentDTO;
+import com.nure.cinema.payment.exception.IdempotencyKeyInProgressException;
+import com.nure.cinema.payment.exception.IdempotencyKeyReusedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Results of payment requests by {@code Idempotency-Key}, kept for {@code ttl} and bounded to
+ * {@code max-keys} entries (oldest evicted first).
+ *
+ * The first request with a key runs; requests with the same key arriving while it runs wait up
+ * to {@code wait-timeout} for its result, later ones get the stored result. A failed request is
+ * forgotten, so a retry runs again. Reusing a key for a different request is rejected.
+ *
+ * Running requests are kept apart from the bounded results, so a burst of new keys can never
+ * evict a key whose payment is still being made and let a retry create a second one.
+ */
+@Component
+public class IdempotencyKeyStore {
+
+    private final long ttlNanos;
+    private final Duration waitTimeout;
+    // both guarded by 'completed'
+    private final Map<String, Entry> inFlight = new HashMap<>();
+    private final Map<String, Entry> completed;
+
+    public IdempotencyKeyStore(@Value("${payment.idempotency.ttl:24h}") Duration ttl,
+                               @Value("${payment.idempotency.max-keys:10000}") int maxKeys,
+                               @Value("${payment.idempotency.wait-timeout:10s}") Duration waitTimeout) {
+        this.ttlNanos = ttl.toNanos();
+        this.waitTimeout = waitTimeout;
+        this.completed = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /**
+     * @param fingerprint identifies the request; the same key with another fingerprint is rejected
+     * @return the result of {@code action}, run at most once per key and fingerprint
+     */
+    public PaymentDTO execute(String key, String fingerprint, Supplier<PaymentDTO> action) {
+        Entry entry;
+        boolean first = false;
+        synchronized (completed) {
+            long now = System.nanoTime();
+            entry = inFlight.get(key);
+            if (entry == null) {
+                entry = completed.get(key);
+                if (entry != null && now - entry.createdAt >= ttlNanos) {
+                    completed.remove(key);
+                    entry = null;
+                }
+            }
+            if (entry == null) {
+                entry = new Entry(fingerprint, now);
+                inFlight.put(key, entry);
+                first = true;
+            }
+        }
+
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException("Idempotency-Key " + key +
+                    " was already used for a different payment request");
+        }
+        if (!first) {
+            System.out.println("[IDEMPOTENCY] Replaying result for key " + key);
+            return await(key, entry.result);
+        }
+
+        try {
+            PaymentDTO result = action.get();
+            synchronized (completed) {
+                inFlight.remove(key, entry);
+                completed.put(key, entry);
+            }
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            synchronized (completed) {
+                inFlight.remove(key, entry);
+            }
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private PaymentDTO await(String key, CompletableFuture<PaymentDTO> result) {
+        try {
+            return result.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException("A request with Idempotency-Key " + key +
+                    " is still in progress, retry later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("Interrupted while waiting for the request with " +
+                    "Idempotency-Key " + key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final long createdAt;
+        private final CompletableFuture<PaymentDTO> result = new CompletableFuture<>();
+
+        Entry(String fingerprint, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.nure.cinema.payment.service;
+
+import com.nure.cinema.payment.exception.PaymentQueueFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Runs payment processing with a fixed number of workers and a bounded number of payments in
+ * progress. At most {@code capacity} payments are admitted and unfinished at any time; beyond
+ * that {@link #submit} rejects with {@link PaymentQueueFullException} instead of queueing
+ * without limit.
+ *
+ * The provider round trip is simulated by a scheduled continuation, so a payment waiting for
+ * the provider holds no thread. Once the delay is over, a worker runs the processor, which
+ * returns whether the payment completed.
+ */
+class PaymentProcessingEngine {
+
+    private final int capacity;
+    private final long providerDelayMillis;
+    private final Predicate<String> processor;
+
+    private final Semaphore slots;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService provider;
+    private volatile boolean accepting = true;
+
+    private final Timer completedTimer;
+    private final Timer failedTimer;
+    private final Counter rejected;
+
+    PaymentProcessingEngine(int workerCount, int capacity, Duration providerDelay,
+                            Predicate<String> processor, MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        this.providerDelayMillis = providerDelay.toMillis();
+        this.processor = processor;
+        this.slots = new Semaphore(capacity);
+        // never rejects: admitted payments are bounded by the slots, so is the queue
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), threadFactory("payment-worker"));
+        this.provider = Executors.newSingleThreadScheduledExecutor(threadFactory("payment-provider"));
+
+        this.completedTimer = Timer.builder("payments.processing")
+                .tag("outcome", "completed")
+                .description("Time from admission to final payment status")
+                .register(meterRegistry);
+        this.failedTimer = Timer.builder("payments.processing")
+                .tag("outcome", "failed")
+                .description("Time from admission to final payment status")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("payments.rejected")
+                .description("Payments rejected because the processing queue was full")
+                .register(meterRegistry);
+        Gauge.builder("payments.queue.depth", this, PaymentProcessingEngine::getQueueDepth)
+                .description("Payments admitted and not yet processed")
+                .register(meterRegistry);
+        Gauge.builder("payments.workers.active", workers, ThreadPoolExecutor::getActiveCount)
+                .description("Workers currently processing a payment")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cheap check before any work is done for a new payment.
+     *
+     * @throws PaymentQueueFullException if a payment submitted now would be rejected
+     */
+    void ensureCapacity() {
+        if (!accepting) {
+            throw new PaymentQueueFullException("Payment processing is shutting down. Retry later.");
+        }
+        if (slots.availablePermits() == 0) {
+            rejected.increment();
+            throw queueFull();
+        }
+    }
+
+    /**
+     * @throws PaymentQueueFullException if {@code capacity} payments are already in progress
+     */
+    void submit(String paymentId) {
+        if (!accepting) {
+            throw new PaymentQueueFullException("Payment processing is shutting down. Retry later.");
+        }
+        if (!slots.tryAcquire()) {
+            rejected.increment();
+            throw queueFull();
+        }
+        long admittedAt = System.nanoTime();
+        try {
+            provider.schedule(() -> workers.execute(() -> process(paymentId, admittedAt)),
+                    providerDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw new PaymentQueueFullException("Payment processing is shutting down. Retry later.");
+        }
+    }
+
+    int getQueueDepth() {
+        return capacity - slots.availablePermits();
+    }
+
+    /**
+     * Stops admitting payments and waits up to {@code timeout} for the admitted ones to finish.
+     */
+    void drain(Duration timeout) {
+        accepting = false;
+        int pending = getQueueDepth();
+        System.out.println("[PAYMENT ENGINE] Draining " + pending + " payment(s) in progress...");
+        try {
+            if (slots.tryAcquire(capacity, timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                System.out.println("[PAYMENT ENGINE] All payments processed");
+            } else {
+                System.err.println("[PAYMENT ENGINE] Drain timed out, " + getQueueDepth() +
+                        " payment(s) left in PENDING");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            provider.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private void process(String paymentId, long admittedAt) {
+        boolean completed = false;
+        try {
+            completed = processor.test(paymentId);
+        } catch (RuntimeException e) {
+            System.err.println("[PAYMENT ENGINE] Processing " + paymentId + " failed: " + e.getMessage());
+        } finally {
+            slots.release();
+            (completed ? completedTimer : failedTimer).record(System.nanoTime() - admittedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private PaymentQueueFullException queueFull() {
+        return new PaymentQueueFullException("Payment queue is full (" + capacity +
+                " payments in progress). Retry later.");
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
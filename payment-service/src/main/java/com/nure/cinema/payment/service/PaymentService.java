@@ -2,13 +2,20 @@ package com.nure.cinema.payment.service;
 
 import com.nure.cinema.payment.client.BookingServiceClient;
 import com.nure.cinema.payment.dto.*;
+import com.nure.cinema.payment.exception.OutboxEntryNotFoundException;
 import com.nure.cinema.payment.exception.PaymentAlreadyExistsException;
 import com.nure.cinema.payment.exception.PaymentNotFoundException;
+import com.nure.cinema.payment.exception.PaymentQueueFullException;
+import com.nure.cinema.payment.model.ConfirmationOutboxEntry;
 import com.nure.cinema.payment.model.Payment;
 import com.nure.cinema.payment.model.Payment.Amount;
 import com.nure.cinema.payment.repository.PaymentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Random;
@@ -21,13 +28,36 @@ public class PaymentService {
 
     private final PaymentRepository paymentRepository;
     private final BookingServiceClient bookingServiceClient;
+    private final IdempotencyKeyStore idempotencyKeys;
+    private final ConfirmationDispatcher confirmationDispatcher;
     private final AtomicInteger idCounter = new AtomicInteger(5002);
     private final Random random = new Random();
+    private final PaymentProcessingEngine processingEngine;
+    private final Duration drainTimeout;
 
     public PaymentService(PaymentRepository paymentRepository,
-                          BookingServiceClient bookingServiceClient) {
+                          BookingServiceClient bookingServiceClient,
+                          IdempotencyKeyStore idempotencyKeys,
+                          ConfirmationDispatcher confirmationDispatcher,
+                          MeterRegistry meterRegistry,
+                          @Value("${payment.processing.workers:8}") int workers,
+                          @Value("${payment.processing.queue-capacity:1000}") int queueCapacity,
+                          @Value("${payment.processing.provider-delay:2s}") Duration providerDelay,
+                          @Value("${payment.processing.drain-timeout:30s}") Duration drainTimeout) {
         this.paymentRepository = paymentRepository;
         this.bookingServiceClient = bookingServiceClient;
+        this.idempotencyKeys = idempotencyKeys;
+        this.confirmationDispatcher = confirmationDispatcher;
+        this.drainTimeout = drainTimeout;
+        // Owned here rather than a separate bean so it drains before the confirmation dispatcher
+        // it hands completed payments to is shut down
+        this.processingEngine = new PaymentProcessingEngine(workers, queueCapacity, providerDelay,
+                this::processPayment, meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        processingEngine.drain(drainTimeout);
     }
 
     public List<PaymentDTO> getAllPayments() {
@@ -65,9 +95,28 @@ public class PaymentService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Creates the payment at most once per {@code idempotencyKey}: retries with the same key get
+     * the first request's result, concurrent ones wait for it. Without a key every call creates
+     * a payment.
+     */
+    public PaymentDTO createPayment(CreatePaymentRequest request, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return createPayment(request);
+        }
+        String key = idempotencyKey.trim();
+        if (key.isEmpty() || key.length() > 255) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to 255 characters long");
+        }
+        return idempotencyKeys.execute(key, fingerprint(request), () -> createPayment(request));
+    }
+
     public PaymentDTO createPayment(CreatePaymentRequest request) {
         validatePaymentRequest(request);
 
+        // Reject early under overload, before spending a Booking Service call
+        processingEngine.ensureCapacity();
+
         // Check for duplicate payment
         if (paymentRepository.existsCompletedPaymentForBooking(request.getBookingId())) {
             throw new PaymentAlreadyExistsException(
@@ -146,7 +195,13 @@ public class PaymentService {
         System.out.println("[ASYNC] Starting payment processing...");
 
         // Process payment asynchronously
-        processPaymentAsync(savedPayment);
+        try {
+            processingEngine.submit(newId);
+        } catch (PaymentQueueFullException e) {
+            // the client is told to retry, so the payment must not linger in PENDING
+            paymentRepository.deleteById(newId);
+            throw e;
+        }
 
         return convertToDTO(savedPayment);
     }
@@ -201,6 +256,21 @@ public class PaymentService {
         System.out.println("[DELETION] Payment " + id + " deleted from system");
     }
 
+    public List<OutboxEntryDTO> getStuckConfirmations() {
+        return confirmationDispatcher.findStuck().stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
+    public void discardParkedConfirmation(String paymentId, String bookingId) {
+        if (!confirmationDispatcher.discardParked(paymentId, bookingId)) {
+            throw new OutboxEntryNotFoundException("No rejected confirmation of booking " + bookingId +
+                    " for payment " + paymentId);
+        }
+        System.out.println("[OUTBOX] Rejected confirmation of booking " + bookingId + " for payment " +
+                paymentId + " discarded by operator");
+    }
+
     private PaymentDTO convertToDTO(Payment payment) {
         PaymentDTO dto = new PaymentDTO();
         dto.setId(payment.getId());
@@ -220,6 +290,18 @@ public class PaymentService {
         return dto;
     }
 
+    private OutboxEntryDTO convertToDTO(ConfirmationOutboxEntry entry) {
+        OutboxEntryDTO dto = new OutboxEntryDTO();
+        dto.setPaymentId(entry.getPaymentId());
+        dto.setBookingId(entry.getBookingId());
+        dto.setEnqueuedAt(entry.getEnqueuedAt());
+        dto.setAttempts(entry.getAttempts());
+        dto.setNextAttemptAt(entry.getNextAttemptAt());
+        dto.setLastError(entry.getLastError());
+        dto.setParked(entry.isParked());
+        return dto;
+    }
+
     private void validatePaymentRequest(CreatePaymentRequest request) {
         if (request.getBookingId() == null || request.getBookingId().trim().isEmpty()) {
             throw new IllegalArgumentException("Booking ID is required and cannot be empty");
@@ -258,59 +340,69 @@ public class PaymentService {
         }
     }
 
+    private String fingerprint(CreatePaymentRequest request) {
+        CreatePaymentRequest.AmountRequest amount = request.getAmount();
+        return request.getBookingId() + "|" +
+                (amount != null ? amount.getValue() + "|" + amount.getCurrency() : "-") + "|" +
+                request.getMethod();
+    }
+
     private boolean isValidPaymentMethod(String method) {
         return List.of("CARD", "PAYPAL", "CASH").contains(method.toUpperCase());
     }
 
-    private void processPaymentAsync(Payment payment) {
-        new Thread(() -> {
-            try {
-                System.out.println("[ASYNC] Processing payment " + payment.getId() + "...");
-                Thread.sleep(2000);
-
-                // Simulate payment processing (95% success rate)
-                boolean success = random.nextInt(100) < 95;
-
-                if (success) {
-                    payment.setStatus("COMPLETED");
-                    payment.setTransactionId("txn-" + UUID.randomUUID().toString().substring(0, 8));
-                    payment.setProcessedAt(LocalDateTime.now());
-                    paymentRepository.save(payment);
-
-                    System.out.println("[ASYNC] Payment " + payment.getId() + " completed successfully");
-
-                    // INTER-SERVICE CALL: Confirm booking after successful payment
-                    System.out.println("[IPC] Confirming booking " + payment.getBookingId() + "...");
-                    boolean confirmed = bookingServiceClient.confirmBooking(payment.getBookingId());
-
-                    if (confirmed) {
-                        System.out.println("[IPC SUCCESS] Booking " + payment.getBookingId() +
-                                " confirmed in Booking Service after payment " + payment.getId());
-                    } else {
-                        System.err.println("[IPC WARNING] Payment succeeded but failed to confirm booking " +
-                                payment.getBookingId() + " in Booking Service. Manual intervention may be required.");
-                    }
-                } else {
-                    payment.setStatus("FAILED");
-                    payment.setProcessedAt(LocalDateTime.now());
-                    paymentRepository.save(payment);
-
-                    System.err.println("[ASYNC] Payment " + payment.getId() + " failed during processing");
-                }
+    /**
+     * Runs on a processing engine worker once the simulated provider delay is over.
+     *
+     * @return true if the payment completed
+     */
+    private boolean processPayment(String paymentId) {
+        Payment payment = paymentRepository.findById(paymentId).orElse(null);
+        if (payment == null) {
+            System.err.println("[ASYNC] Payment " + paymentId + " was deleted before processing");
+            return false;
+        }
 
-            } catch (InterruptedException e) {
-                System.err.println("[ASYNC ERROR] Payment processing interrupted: " + e.getMessage());
-                payment.setStatus("FAILED");
-                payment.setProcessedAt(LocalDateTime.now());
-                paymentRepository.save(payment);
-                Thread.currentThread().interrupt();
-            } catch (Exception e) {
-                System.err.println("[ASYNC ERROR] Unexpected error processing payment: " + e.getMessage());
-                payment.setStatus("FAILED");
+        try {
+            System.out.println("[ASYNC] Processing payment " + payment.getId() + "...");
+
+            // Simulate payment processing (95% success rate)
+            boolean success = random.nextInt(100) < 95;
+
+            if (success) {
+                payment.setStatus("COMPLETED");
+                payment.setTransactionId("txn-" + UUID.randomUUID().toString().substring(0, 8));
                 payment.setProcessedAt(LocalDateTime.now());
                 paymentRepository.save(payment);
-                e.printStackTrace();
+
+                System.out.println("[ASYNC] Payment " + payment.getId() + " completed successfully");
+
+                // INTER-SERVICE CALL: Confirm booking after successful payment, delivered
+                // from the outbox so it is retried until Booking Service accepts it
+                try {
+                    confirmationDispatcher.submit(payment.getId(), payment.getBookingId());
+                    System.out.println("[IPC] Booking " + payment.getBookingId() + " queued for confirmation");
+                } catch (RuntimeException e) {
+                    System.err.println("[IPC WARNING] Payment succeeded but failed to queue confirmation of booking " +
+                            payment.getBookingId() + ": " + e.getMessage() + ". Manual intervention may be required.");
+                }
+                return true;
             }
-        }).start();
+
+            payment.setStatus("FAILED");
+            payment.setProcessedAt(LocalDateTime.now());
+            paymentRepository.save(payment);
+
+            System.err.println("[ASYNC] Payment " + payment.getId() + " failed during processing");
+            return false;
+
+        } catch (Exception e) {
+            System.err.println("[ASYNC ERROR] Unexpected error processing payment: " + e.getMessage());
+            payment.setStatus("FAILED");
+            payment.setProcessedAt(LocalDateTime.now());
+            paymentRepository.save(payment);
+            e.printStackTrace();
+            return false;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,173 @@
+package com.nure.cinema.payment.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.nure.cinema.payment.dto.BookingInfoDTO;
+import com.nure.cinema.payment.validation.SchemaValidator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Thundering herd against a stub Booking Service: many concurrent getBooking calls for one
+ * booking must reach Booking Service once.
+ */
+class BookingServiceClientLoadTest {
+
+    private static final int CALLERS = 200;
+
+    private final Map<String, AtomicInteger> requestsByBooking = new ConcurrentHashMap<>();
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+    private final ExecutorService callerThreads = Executors.newFixedThreadPool(CALLERS);
+    private HttpServer server;
+    private BookingServiceClient client;
+
+    @BeforeEach
+    void startStubBookingService() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/bookings/", this::serveBooking);
+        server.setExecutor(serverThreads);
+        server.start();
+
+        ObjectMapper objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        client = new BookingServiceClient("booking-service", Duration.ofSeconds(5), 4, 1000, "round-robin", 5,
+                Duration.ofSeconds(10), Duration.ofMinutes(5), objectMapper, new SchemaValidator(objectMapper),
+                discoveryClient(server.getAddress().getPort()));
+    }
+
+    @AfterEach
+    void stop() {
+        callerThreads.shutdownNow();
+        client.shutdown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void concurrentLookupsOfOneBookingMakeOneCall() throws Exception {
+        List<BookingInfoDTO> bookings = herd(i -> "bk-1001");
+
+        assertEquals(1, requests("bk-1001"), CALLERS + " concurrent lookups, outbound calls");
+        bookings.forEach(booking -> assertEquals("bk-1001", booking.getId()));
+    }
+
+    @Test
+    void concurrentLookupsShareAFailure() throws Exception {
+        List<BookingInfoDTO> bookings = herd(i -> "bk-5000");
+
+        assertEquals(1, requests("bk-5000"), CALLERS + " concurrent failing lookups, outbound calls");
+        bookings.forEach(booking -> assertNull(booking, "every caller sees the failure"));
+    }
+
+    @Test
+    void lookupsOfDifferentBookingsAreNotCoalesced() throws Exception {
+        herd(i -> "bk-" + (2000 + i % 10));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, requests("bk-" + (2000 + i)));
+        }
+    }
+
+    /**
+     * Releases {@link #CALLERS} threads at once, caller {@code i} looking up {@code bookingIdFor(i)}.
+     */
+    private List<BookingInfoDTO> herd(IntFunction<String> bookingIdFor) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<BookingInfoDTO>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            String bookingId = bookingIdFor.apply(i);
+            calls.add(callerThreads.submit(() -> {
+                start.await();
+                return client.getBooking(bookingId);
+            }));
+        }
+        start.countDown();
+        List<BookingInfoDTO> bookings = new ArrayList<>();
+        for (Future<BookingInfoDTO> call : calls) {
+            bookings.add(call.get(10, TimeUnit.SECONDS));
+        }
+        return bookings;
+    }
+
+    private int requests(String bookingId) {
+        AtomicInteger count = requestsByBooking.get(bookingId);
+        return count != null ? count.get() : 0;
+    }
+
+    // Slow enough that every caller arrives while the first request is still in flight
+    private void serveBooking(HttpExchange exchange) throws IOException {
+        String bookingId = exchange.getRequestURI().getPath().substring("/api/bookings/".length());
+        requestsByBooking.computeIfAbsent(bookingId, id -> new AtomicInteger()).incrementAndGet();
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (bookingId.equals("bk-5000")) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = ("""
+                {"id":"%s","sessionId":"sess-1001","userId":"user-1","customerName":"Test Customer",
+                 "customerEmail":"test@example.com","totalPrice":{"value":8.0,"currency":"EUR"},
+                 "status":"PENDING","createdAt":"2026-11-01T18:00:00"}
+                """.formatted(bookingId)).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static DiscoveryClient discoveryClient(int port) {
+        ServiceInstance instance = new DefaultServiceInstance("booking-service-1", "booking-service",
+                "localhost", port, false);
+        return new DiscoveryClient() {
+            @Override
+            public String description() {
+                return "stub";
+            }
+
+            @Override
+            public List<ServiceInstance> getInstances(String serviceId) {
+                return List.of(instance);
+            }
+
+            @Override
+            public List<String> getServices() {
+                return List.of("booking-service");
+            }
+        };
+    }
+}
@@ -0,0 +1,166 @@
+package com.nure.cinema.payment.repository;
+
+import com.nure.cinema.payment.model.ConfirmationOutboxEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfirmationOutboxTest {
+
+    private static final int ENTRIES = 2000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compactionKeepsOnlyLiveEntries() throws Exception {
+        ConfirmationOutbox outbox = new ConfirmationOutbox(dir.toString());
+        List<ConfirmationOutboxEntry> entries = enqueue(outbox, ENTRIES);
+        long sizeBefore = Files.size(log());
+        for (ConfirmationOutboxEntry entry : entries.subList(0, ENTRIES - 10)) {
+            outbox.acknowledge(entry);
+        }
+        outbox.enqueue("pay-new", "bk-new");
+        outbox.close();
+
+        assertTrue(Files.size(log()) < sizeBefore, "outbox file was not compacted");
+        ConfirmationOutbox recovered = new ConfirmationOutbox(dir.toString());
+        assertEquals(11, recovered.size());
+        recovered.close();
+    }
+
+    @Test
+    void failedCompactionKeepsOutboxWritable() throws Exception {
+        // a non-empty directory where the compacted file would be written makes every compaction fail
+        Path blocker = Files.createDirectories(dir.resolve("confirmation-outbox.log.tmp"));
+        Files.createFile(blocker.resolve("keep"));
+
+        ConfirmationOutbox outbox = new ConfirmationOutbox(dir.toString());
+        List<ConfirmationOutboxEntry> entries = enqueue(outbox, ENTRIES);
+        for (ConfirmationOutboxEntry entry : entries.subList(0, ENTRIES - 10)) {
+            outbox.acknowledge(entry);
+        }
+        outbox.enqueue("pay-new", "bk-new");
+        outbox.acknowledge(entries.get(ENTRIES - 1));
+        outbox.close();
+
+        ConfirmationOutbox recovered = new ConfirmationOutbox(dir.toString());
+        assertEquals(10, recovered.size());
+        assertTrue(recovered.findAll().stream().anyMatch(e -> e.getBookingId().equals("bk-new")));
+        recovered.close();
+    }
+
+    @Test
+    void retryStateSurvivesRestart() {
+        ConfirmationOutbox outbox = new ConfirmationOutbox(dir.toString());
+        ConfirmationOutboxEntry retried = outbox.enqueue("pay-1", "bk-1");
+        ConfirmationOutboxEntry rejected = outbox.enqueue("pay-2", "bk-2");
+        LocalDateTime nextAttemptAt = LocalDateTime.now().plusMinutes(5).truncatedTo(ChronoUnit.MILLIS);
+        outbox.recordAttempt(retried, 3, nextAttemptAt, "Booking Service unavailable");
+        outbox.park(rejected, 1, "Rejected by Booking Service");
+        outbox.close();
+
+        Map<String, ConfirmationOutboxEntry> recovered = new ConfirmationOutbox(dir.toString()).findAll().stream()
+                .collect(Collectors.toMap(ConfirmationOutboxEntry::getBookingId, e -> e));
+
+        ConfirmationOutboxEntry stillRetried = recovered.get("bk-1");
+        assertEquals(3, stillRetried.getAttempts());
+        assertEquals(nextAttemptAt, stillRetried.getNextAttemptAt());
+        assertEquals("Booking Service unavailable", stillRetried.getLastError());
+        assertFalse(stillRetried.isParked());
+        ConfirmationOutboxEntry stillParked = recovered.get("bk-2");
+        assertTrue(stillParked.isParked());
+        assertEquals(1, stillParked.getAttempts());
+    }
+
+    @Test
+    void compactionKeepsRetryState() {
+        ConfirmationOutbox outbox = new ConfirmationOutbox(dir.toString());
+        List<ConfirmationOutboxEntry> entries = enqueue(outbox, ENTRIES);
+        ConfirmationOutboxEntry parked = entries.get(ENTRIES - 1);
+        outbox.park(parked, 2, "Rejected by Booking Service");
+        for (ConfirmationOutboxEntry entry : entries.subList(0, ENTRIES - 10)) {
+            outbox.acknowledge(entry);
+        }
+        outbox.close();
+
+        ConfirmationOutbox recovered = new ConfirmationOutbox(dir.toString());
+        assertEquals(10, recovered.size());
+        assertEquals(1, recovered.findAll().stream().filter(ConfirmationOutboxEntry::isParked).count());
+        assertEquals(1, recovered.parkedCount());
+        assertEquals(9, recovered.pendingCount());
+        recovered.close();
+    }
+
+    @Test
+    void discardedParkedEntryStaysGone() {
+        ConfirmationOutbox outbox = new ConfirmationOutbox(dir.toString());
+        ConfirmationOutboxEntry retried = outbox.enqueue("pay-1", "bk-1");
+        ConfirmationOutboxEntry rejected = outbox.enqueue("pay-2", "bk-2");
+        outbox.recordAttempt(retried, 1, LocalDateTime.now().plusMinutes(5), "Booking Service unavailable");
+        outbox.park(rejected, 1, "Rejected by Booking Service");
+        assertEquals(1, outbox.pendingCount());
+        assertEquals(1, outbox.parkedCount());
+
+        assertTrue(outbox.discardParked("pay-1", "bk-1").isEmpty(), "entry still being retried was discarded");
+        assertTrue(outbox.discardParked("pay-2", "bk-2").isPresent());
+        assertTrue(outbox.discardParked("pay-2", "bk-2").isEmpty());
+        assertEquals(0, outbox.parkedCount());
+        outbox.close();
+
+        ConfirmationOutbox recovered = new ConfirmationOutbox(dir.toString());
+        assertEquals(1, recovered.size());
+        assertEquals(1, recovered.pendingCount());
+        assertEquals(0, recovered.parkedCount());
+        recovered.close();
+    }
+
+    @Test
+    void findDueSkipsParkedAndBackingOffEntries() {
+        ConfirmationOutbox outbox = new ConfirmationOutbox(dir.toString());
+        List<ConfirmationOutboxEntry> entries = enqueue(outbox, 5);
+        outbox.park(entries.get(0), 1, "Rejected by Booking Service");
+        outbox.recordAttempt(entries.get(1), 1, LocalDateTime.now().plusMinutes(5), "Booking Service unavailable");
+        outbox.acknowledge(entries.get(2));
+        LocalDateTime now = LocalDateTime.now();
+
+        assertEquals(List.of("bk-3", "bk-4"), bookingIds(outbox.findDue(now, 10)));
+        assertEquals(List.of("bk-3"), bookingIds(outbox.findDue(now, 1)));
+        assertEquals(List.of("bk-3", "bk-4", "bk-1"), bookingIds(outbox.findDue(now.plusMinutes(10), 10)));
+        outbox.close();
+
+        ConfirmationOutbox recovered = new ConfirmationOutbox(dir.toString());
+        assertEquals(List.of("bk-3", "bk-4"), bookingIds(recovered.findDue(now, 10)));
+        assertTrue(recovered.discardParked("pay-0", "bk-0").isPresent());
+        assertEquals(List.of("bk-3", "bk-4", "bk-1"), bookingIds(recovered.findDue(now.plusMinutes(10), 10)));
+        recovered.close();
+    }
+
+    private static List<String> bookingIds(List<ConfirmationOutboxEntry> entries) {
+        return entries.stream().map(ConfirmationOutboxEntry::getBookingId).toList();
+    }
+
+    private static List<ConfirmationOutboxEntry> enqueue(ConfirmationOutbox outbox, int count) {
+        List<ConfirmationOutboxEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(outbox.enqueue("pay-" + i, "bk-" + i));
+        }
+        return entries;
+    }
+
+    private Path log() {
+        return dir.resolve("confirmation-outbox.log");
+    }
+}
@@ -0,0 +1,89 @@
+package com.nure.cinema.payment.service;
+
+import com.nure.cinema.payment.dto.PaymentDTO;
+import com.nure.cinema.payment.exception.IdempotencyKeyInProgressException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyKeyStoreTest {
+
+    @Test
+    void newKeysDoNotEvictRunningRequest() throws Exception {
+        IdempotencyKeyStore store = new IdempotencyKeyStore(Duration.ofHours(1), 2, Duration.ofSeconds(5));
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<PaymentDTO> first = CompletableFuture.supplyAsync(() ->
+                store.execute("key-slow", "fp", () -> {
+                    runs.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return payment("pay-slow");
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // far more completed keys than max-keys while key-slow is still running
+        for (int i = 0; i < 10; i++) {
+            String id = "pay-" + i;
+            store.execute("key-" + i, "fp", () -> payment(id));
+        }
+
+        CompletableFuture<PaymentDTO> retry = CompletableFuture.supplyAsync(() ->
+                store.execute("key-slow", "fp", () -> {
+                    runs.incrementAndGet();
+                    return payment("pay-duplicate");
+                }));
+        release.countDown();
+
+        assertEquals("pay-slow", first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("pay-slow", retry.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void retryStopsWaitingAfterTimeout() throws Exception {
+        IdempotencyKeyStore store = new IdempotencyKeyStore(Duration.ofHours(1), 10, Duration.ofMillis(100));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<PaymentDTO> first = CompletableFuture.supplyAsync(() ->
+                store.execute("key-1", "fp", () -> {
+                    started.countDown();
+                    await(release);
+                    return payment("pay-1");
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        long startedAt = System.nanoTime();
+        assertThrows(IdempotencyKeyInProgressException.class,
+                () -> store.execute("key-1", "fp", () -> payment("pay-duplicate")));
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(5));
+
+        release.countDown();
+        assertEquals("pay-1", first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("pay-1", store.execute("key-1", "fp", () -> payment("pay-duplicate")).getId());
+    }
+
+    private static PaymentDTO payment(String id) {
+        PaymentDTO payment = new PaymentDTO();
+        payment.setId(id);
+        return payment;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}